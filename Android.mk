@@ -38,8 +38,7 @@ LOCAL_STATIC_JAVA_LIBRARIES := \
         gson \
         android-support-v7 \
         android-support-v7-appcompat \
-        calendar-common \
-        jxl1
+        calendar-common
 #LOCAL_SDK_VERSION := current
 
 LOCAL_RESOURCE_DIR := $(addprefix $(LOCAL_PATH)/, $(res_dirs))
@@ -60,8 +59,7 @@ include $(BUILD_PACKAGE)
 
 include $(CLEAR_VARS)
 
-LOCAL_PREBUILT_STATIC_JAVA_LIBRARIES := jxl1:libs/jxl.jar \
-                                        joda-time:libs/joda-time-2.3.jar \
+LOCAL_PREBUILT_STATIC_JAVA_LIBRARIES := joda-time:libs/joda-time-2.3.jar \
                                         joda-convert:libs/joda-convert-1.9.2.jar \
                                         gson:libs/gson-2.8.0.jar \
                                         android-support-v7:libs/android-support-v7-recyclerview.jar \
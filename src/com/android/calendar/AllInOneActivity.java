@@ -79,7 +79,9 @@ import com.android.calendar.month.MonthByWeekFragment;
 import com.sprd.calendar.SprdTextWatcher;
 import com.android.calendar.selectcalendars.SelectVisibleCalendarsFragment;
 
+import java.io.FileDescriptor;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -830,6 +832,12 @@ public class AllInOneActivity extends AbstractCalendarActivity implements
         /* @} */
     }
 
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        DrawAllocationAudit.dump(prefix, writer);
+    }
+
     private void initFragments(long timeMillis, int viewType, Bundle icicle) {
         if (DEBUG) {
             Log.d(TAG, "Initializing to " + timeMillis + " for view "
@@ -20,7 +20,10 @@ import android.app.Application;
 import android.content.res.Configuration;
 import com.sprd.calendar.lunar.LunarCalendar;
 import com.sprd.calendar.lunar.LunarCalendarConvertUtil;
+import com.sprd.calendar.lunar.LunarYearCache;
 import com.sprd.calendar.foreigncalendar.ForeignFestivalCalendar;
+import com.sprd.calendar.newmonth.PageRenderCache;
+import com.sprd.calendar.newmonth.data.HolidayStore;
 
 public class CalendarApplication extends Application {
     @Override
@@ -41,17 +44,30 @@ public class CalendarApplication extends Application {
         // Initialize the registry mapping some custom behavior.
         ExtensionsFactory.init(getAssets());
 
+        HolidayStore.loadAsync(this);
+
         // SPRD: Modify for bug473571, add lunar info
         Utils.mLunarFlag = LunarCalendarConvertUtil.SUPPORT_LUNAR && LunarCalendarConvertUtil.isLunarSetting();
+        if (Utils.mLunarFlag) {
+            LunarYearCache.warmUpAsync(this);
+        }
+        if (Utils.mSupportForeignFestivalCalendar) {
+            ForeignFestivalCalendar.preloadAsync(this);
+        }
     }
 
     /* SPRD: Modify for bug473571, add lunar info @{ */
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
+        // cached month and week pages and event text may show another
+        // theme, language or font scale
+        PageRenderCache.clearIfCreated();
+        EventLayoutCache.clearIfCreated();
         Utils.mLunarFlag = LunarCalendarConvertUtil.SUPPORT_LUNAR
                 && LunarCalendarConvertUtil.isLunarSetting();
         if (LunarCalendarConvertUtil.isLunarSetting()) {
             LunarCalendar.reloadLanguageResources(this);
+            LunarYearCache.warmUpAsync(this);
         } else {
             LunarCalendar.clearLanguageResourcesRefs();
         }
@@ -65,4 +81,11 @@ public class CalendarApplication extends Application {
         }
         /* @} */
     }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        PageRenderCache.clearIfCreated();
+        EventLayoutCache.clearIfCreated();
+    }
 }
@@ -52,6 +52,7 @@ import android.text.format.DateUtils;
 import android.text.format.Time;
 import android.text.style.StyleSpan;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.view.GestureDetector;
@@ -176,6 +177,18 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     private int mTodayJulianDay;
 
     private final Typeface mBold = Typeface.DEFAULT_BOLD;
+
+    // Day of the month labels of the day headers, and the same after a space
+    // for measuring, so drawing them does not build strings
+    private static final String[] DATE_STRS = new String[32];
+    private static final String[] SPACED_DATE_STRS = new String[32];
+
+    static {
+        for (int i = 1; i < DATE_STRS.length; i++) {
+            DATE_STRS[i] = String.valueOf(i);
+            SPACED_DATE_STRS[i] = " " + DATE_STRS[i];
+        }
+    }
     private int mFirstJulianDay;
     private int mLoadedFirstJulianDay = -1;
     private int mLastJulianDay;
@@ -359,6 +372,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
 
     private final EventLoader mEventLoader;
     protected final EventGeometry mEventGeometry;
+    private final EventSpatialIndex mEventIndex = new EventSpatialIndex();
 
     private static float GRID_LINE_LEFT_MARGIN = 0;
     private static final float GRID_LINE_INNER_WIDTH = 1;
@@ -533,6 +547,8 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
      * A count of the number of allday events that were not drawn for each day
      */
     private int[] mSkippedAlldayEvents;
+    // "+n" labels of the hidden all-day events by n
+    private final SparseArray<String> mMoreEventsStrs = new SparseArray<String>();
     /**
      * The number of allDay events at which point we start hiding allDay events.
      */
@@ -562,11 +578,14 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     private boolean mIs24HourFormat;
 
     private final ArrayList<Event> mSelectedEvents = new ArrayList<Event>();
+    /* the all-day events of the selection by row, for computeAllDayNeighbors */
+    private final SparseArray<Event> mSelectedAllDayRows = new SparseArray<Event>();
     private boolean mComputeSelectedEvents;
     private boolean mUpdateToast;
     private Event mSelectedEvent;
     private Event mPrevSelectedEvent;
     private final Rect mPrevBox = new Rect();
+    private final Rect mSelectionBox = new Rect();
     protected final Resources mResources;
     protected final Drawable mCurrentTimeLine;
     protected final Drawable mCurrentTimeAnimateLine;
@@ -1393,6 +1412,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         final long minimumDurationMillis = (long) (MIN_EVENT_HEIGHT
                 * DateUtils.MINUTE_IN_MILLIS / (mCellHeight / 60.0f));
         Event.computePositions(mEvents, minimumDurationMillis);
+        mEventIndex.invalidate();
 
         // Compute the top of our reachable view
         mMaxViewStartY = HOUR_GAP + 24 * (mCellHeight + HOUR_GAP)
@@ -2278,6 +2298,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
 
     @Override
     protected void onDraw(Canvas canvas) {
+        int allocations = DrawAllocationAudit.begin();
         if (mRemeasure) {
             remeasure(getWidth(), getHeight());
             mRemeasure = false;
@@ -2353,6 +2374,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             }
         }
         canvas.restore();
+        DrawAllocationAudit.end("DayView", allocations);
     }
 
     private void drawAfterScroll(Canvas canvas) {
@@ -2583,8 +2605,6 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         int alpha = p.getAlpha();
         p.setAlpha(mEventsAlpha);
         for (int day = 0; day < mNumDays; day++, cell++) {
-            // TODO Wow, this needs cleanup. drawEvents loop through all the
-            // events on every call.
             drawEvents(cell, day, HOUR_GAP, canvas, p);
             // If this is today
             if (cell == mTodayJulianDay) {
@@ -2646,7 +2666,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                 p.setTypeface(Typeface.defaultFromStyle(Typeface.BOLD));
                 canvas.drawText(mNewEventHintString, r.left
                         + EVENT_TEXT_LEFT_MARGIN,
-                        r.top + Math.abs(p.getFontMetrics().ascent)
+                        r.top + Math.abs(p.ascent())
                                 + EVENT_TEXT_TOP_MARGIN, p);
             }
         }
@@ -2683,7 +2703,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
 
         int todayIndex = mTodayJulianDay - mFirstJulianDay;
         // Draw day of the month
-        String dateNumStr = String.valueOf(dateNum);
+        String dateNumStr = DATE_STRS[dateNum];
         if (mNumDays > 1) {
             float y = DAY_HEADER_HEIGHT - DAY_HEADER_BOTTOM_MARGIN;
 
@@ -2696,7 +2716,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             canvas.drawText(dateNumStr, x, y, p);
 
             // Draw day of the week
-            x -= p.measureText(" " + dateNumStr);
+            x -= p.measureText(SPACED_DATE_STRS[dateNum]);
             p.setTextSize(DAY_HEADER_FONT_SIZE);
             p.setTypeface(Typeface.DEFAULT);
             canvas.drawText(dayStr, x, y, p);
@@ -2884,7 +2904,7 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
     }
 
     private Rect getCurrentSelectionPosition() {
-        Rect box = new Rect();
+        Rect box = mSelectionBox;
         box.top = mSelectionHour * (mCellHeight + HOUR_GAP);
         box.bottom = box.top + mCellHeight + HOUR_GAP;
         int daynum = mSelectionDay - mFirstJulianDay;
@@ -2939,24 +2959,11 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         }
 
         StaticLayout layout = layouts[i];
+        int width = EventLayoutCache.getLayoutWidth(r.width());
         // Check if we have already initialized the StaticLayout and that
         // the width hasn't changed (due to vertical resizing which causes
         // re-layout of events at min height)
-        if (layout == null || r.width() != layout.getWidth()) {
-            SpannableStringBuilder bob = new SpannableStringBuilder();
-            if (event.title != null) {
-                // MAX - 1 since we add a space
-                bob.append(drawTextSanitizer(event.title.toString(),
-                        MAX_EVENT_TEXT_LEN - 1));
-                bob.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0,
-                        bob.length(), 0);
-                bob.append(' ');
-            }
-            if (event.location != null) {
-                bob.append(drawTextSanitizer(event.location.toString(),
-                        MAX_EVENT_TEXT_LEN - bob.length()));
-            }
-
+        if (layout == null || width != layout.getWidth()) {
             switch (event.selfAttendeeStatus) {
             case Attendees.ATTENDEE_STATUS_INVITED:
                 paint.setColor(event.color);
@@ -2973,11 +2980,20 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                 break;
             }
 
-            // Leave a one pixel boundary on the left and right of the rectangle
-            // for the event
-            layout = new StaticLayout(bob, 0, bob.length(),
-                    new TextPaint(paint), r.width(), Alignment.ALIGN_NORMAL,
-                    1.0f, 0.0f, true, null, r.width());
+            // Another event of the same text, color and width may have been
+            // laid out by this view or the other one of the fragment
+            EventLayoutCache cache = EventLayoutCache.getInstance();
+            layout = cache.get(event, width, paint.getColor(), paint.getTextSize());
+            if (layout == null) {
+                CharSequence text = getEventText(event);
+
+                // Leave a one pixel boundary on the left and right of the rectangle
+                // for the event
+                layout = new StaticLayout(text, 0, text.length(),
+                        new TextPaint(paint), width, Alignment.ALIGN_NORMAL,
+                        1.0f, 0.0f, true, null, width);
+                cache.put(event, width, paint.getColor(), paint.getTextSize(), layout);
+            }
 
             layouts[i] = layout;
         }
@@ -2985,6 +3001,31 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         return layout;
     }
 
+    /**
+     * Returns the sanitized title and location of the event as drawn in its
+     * rectangle, built once per event.
+     */
+    private CharSequence getEventText(Event event) {
+        if (event.drawText != null) {
+            return event.drawText;
+        }
+        SpannableStringBuilder bob = new SpannableStringBuilder();
+        if (event.title != null) {
+            // MAX - 1 since we add a space
+            bob.append(drawTextSanitizer(event.title.toString(),
+                    MAX_EVENT_TEXT_LEN - 1));
+            bob.setSpan(new StyleSpan(android.graphics.Typeface.BOLD), 0,
+                    bob.length(), 0);
+            bob.append(' ');
+        }
+        if (event.location != null) {
+            bob.append(drawTextSanitizer(event.location.toString(),
+                    MAX_EVENT_TEXT_LEN - bob.length()));
+        }
+        event.drawText = bob;
+        return bob;
+    }
+
     private void drawAllDayEvents(int firstDay, int numDays, Canvas canvas,
             Paint p) {
 
@@ -3032,7 +3073,11 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         int allDayEventClip = DAY_HEADER_HEIGHT + mAlldayHeight
                 + ALLDAY_TOP_MARGIN;
         // The number of events that weren't drawn in each day
-        mSkippedAlldayEvents = new int[numDays];
+        if (mSkippedAlldayEvents == null || mSkippedAlldayEvents.length != numDays) {
+            mSkippedAlldayEvents = new int[numDays];
+        } else {
+            Arrays.fill(mSkippedAlldayEvents, 0);
+        }
         if (mMaxAlldayEvents > mMaxUnexpandedAlldayEventCount
                 && !mShowAllAllDayEvents && mAnimateDayHeight == 0) {
             // We draw one fewer event than will fit so that more events text
@@ -3166,11 +3211,15 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         p.setAntiAlias(true);
         p.setStyle(Style.FILL);
         p.setTextSize(EVENT_TEXT_FONT_SIZE);
-        String text = mResources.getQuantityString(R.plurals.month_more_events,
-                remainingEvents);
+        String text = mMoreEventsStrs.get(remainingEvents);
+        if (text == null) {
+            text = String.format(mResources.getQuantityString(R.plurals.month_more_events,
+                    remainingEvents), remainingEvents);
+            mMoreEventsStrs.put(remainingEvents, text);
+        }
         y += EVENT_SQUARE_WIDTH;
         x += EVENT_SQUARE_WIDTH + EVENT_LINE_PADDING;
-        canvas.drawText(String.format(text, remainingEvents), x, y, p);
+        canvas.drawText(text, x, y, p);
     }
 
     private void computeAllDayNeighbors() {
@@ -3188,10 +3237,15 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             ev.nextRight = null;
         }
 
-        // For each event in the selected event list "mSelectedEvents", find
-        // its neighbors in the up and down directions. This could be done
-        // more efficiently by sorting on the Event.getColumn() field, but
-        // the list is expected to be very small.
+        // The events of the selection all cover the selected day, so each
+        // one is in a row of its own and its neighbors in the up and down
+        // directions are the events in the rows next to it.
+        SparseArray<Event> rows = mSelectedAllDayRows;
+        rows.clear();
+        for (int ii = 0; ii < len; ii++) {
+            Event ev = mSelectedEvents.get(ii);
+            rows.put(ev.getColumn(), ev);
+        }
 
         // Find the event in the same row as the previously selected all-day
         // event, if any.
@@ -3211,19 +3265,10 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                 maxPositionEvent = ev;
                 maxPosition = position;
             }
-            for (int jj = 0; jj < len; jj++) {
-                if (jj == ii) {
-                    continue;
-                }
-                Event neighbor = mSelectedEvents.get(jj);
-                int neighborPosition = neighbor.getColumn();
-                if (neighborPosition == position - 1) {
-                    ev.nextUp = neighbor;
-                } else if (neighborPosition == position + 1) {
-                    ev.nextDown = neighbor;
-                }
-            }
+            ev.nextUp = rows.get(position - 1);
+            ev.nextDown = rows.get(position + 1);
         }
+        rows.clear();
         if (startEvent != null) {
             setSelectedEvent(startEvent);
         } else {
@@ -3246,15 +3291,17 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         selectionArea.right = selectionArea.left + cellWidth;
 
         final ArrayList<Event> events = mEvents;
-        int numEvents = events.size();
         EventGeometry geometry = mEventGeometry;
+        EventSpatialIndex index = getEventIndex();
+        int numEvents = index.queryDay(date);
 
         final int viewEndY = mViewStartY + mViewHeight - DAY_HEADER_HEIGHT
                 - mAlldayHeight;
 
         int alpha = eventTextPaint.getAlpha();
         eventTextPaint.setAlpha(mEventsAlpha);
-        for (int i = 0; i < numEvents; i++) {
+        for (int k = 0; k < numEvents; k++) {
+            int i = index.getResult(k);
             Event event = events.get(i);
             if (!geometry.computeEventRect(date, left, top, cellWidth, event)) {
                 continue;
@@ -3293,6 +3340,14 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         }
     }
 
+    // Returns the index of the timed events for the current layout.
+    private EventSpatialIndex getEventIndex() {
+        if (!mEventIndex.isValid(mEvents, mFirstJulianDay, mNumDays)) {
+            mEventIndex.build(mEvents, mFirstJulianDay, mNumDays, mEventGeometry);
+        }
+        return mEventIndex;
+    }
+
     // Computes the "nearest" neighbor event in four directions (left, right,
     // up, down) for each of the events in the mSelectedEvents array.
     private void computeNeighbors() {
@@ -3301,15 +3356,6 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             return;
         }
 
-        // First, clear all the links
-        for (int ii = 0; ii < len; ii++) {
-            Event ev = mSelectedEvents.get(ii);
-            ev.nextUp = null;
-            ev.nextDown = null;
-            ev.nextLeft = null;
-            ev.nextRight = null;
-        }
-
         Event startEvent = mSelectedEvents.get(0);
         int startEventDistance1 = 100000; // any large number
         int startEventDistance2 = 100000; // any large number
@@ -3371,14 +3417,11 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             prevCenter = (prevLeft + prevRight) / 2;
         }
 
-        // For each event in the selected event list "mSelectedEvents", search
-        // all the other events in that list for the nearest neighbor in 4
-        // directions.
+        // Pick the event closest to the previously selected event to start
+        // from.
         for (int ii = 0; ii < len; ii++) {
             Event ev = mSelectedEvents.get(ii);
 
-            int startTime = ev.startTime;
-            int endTime = ev.endTime;
             int left = (int) ev.left;
             int right = (int) ev.right;
             int top = (int) ev.top;
@@ -3389,28 +3432,6 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
             if (bottom > box.bottom) {
                 bottom = box.bottom;
             }
-            // if (false) {
-            // int flags = DateUtils.FORMAT_SHOW_TIME |
-            // DateUtils.FORMAT_ABBREV_ALL
-            // | DateUtils.FORMAT_CAP_NOON_MIDNIGHT;
-            // if (DateFormat.is24HourFormat(mContext)) {
-            // flags |= DateUtils.FORMAT_24HOUR;
-            // }
-            // String timeRange = DateUtils.formatDateRange(mContext,
-            // ev.startMillis,
-            // ev.endMillis, flags);
-            // Log.i("Cal", "left: " + left + " right: " + right + " top: " +
-            // top + " bottom: "
-            // + bottom + " ev: " + timeRange + " " + ev.title);
-            // }
-            int upDistanceMin = 10000; // any large number
-            int downDistanceMin = 10000; // any large number
-            int leftDistanceMin = 10000; // any large number
-            int rightDistanceMin = 10000; // any large number
-            Event upEvent = null;
-            Event downEvent = null;
-            Event leftEvent = null;
-            Event rightEvent = null;
 
             // Pick the starting event closest to the previously selected event,
             // if any. distance1 takes precedence over distance2.
@@ -3451,135 +3472,10 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
                 startEventDistance1 = distance1;
                 startEventDistance2 = distance2;
             }
-
-            // For each neighbor, figure out if it is above or below or left
-            // or right of me and compute the distance.
-            for (int jj = 0; jj < len; jj++) {
-                if (jj == ii) {
-                    continue;
-                }
-                Event neighbor = mSelectedEvents.get(jj);
-                int neighborLeft = (int) neighbor.left;
-                int neighborRight = (int) neighbor.right;
-                if (neighbor.endTime <= startTime) {
-                    // This neighbor is entirely above me.
-                    // If we overlap the same column, then compute the distance.
-                    if (neighborLeft < right && neighborRight > left) {
-                        int distance = startTime - neighbor.endTime;
-                        if (distance < upDistanceMin) {
-                            upDistanceMin = distance;
-                            upEvent = neighbor;
-                        } else if (distance == upDistanceMin) {
-                            int center = (left + right) / 2;
-                            int currentDistance = 0;
-                            int currentLeft = (int) upEvent.left;
-                            int currentRight = (int) upEvent.right;
-                            if (currentRight <= center) {
-                                currentDistance = center - currentRight;
-                            } else if (currentLeft >= center) {
-                                currentDistance = currentLeft - center;
-                            }
-
-                            int neighborDistance = 0;
-                            if (neighborRight <= center) {
-                                neighborDistance = center - neighborRight;
-                            } else if (neighborLeft >= center) {
-                                neighborDistance = neighborLeft - center;
-                            }
-                            if (neighborDistance < currentDistance) {
-                                upDistanceMin = distance;
-                                upEvent = neighbor;
-                            }
-                        }
-                    }
-                } else if (neighbor.startTime >= endTime) {
-                    // This neighbor is entirely below me.
-                    // If we overlap the same column, then compute the distance.
-                    if (neighborLeft < right && neighborRight > left) {
-                        int distance = neighbor.startTime - endTime;
-                        if (distance < downDistanceMin) {
-                            downDistanceMin = distance;
-                            downEvent = neighbor;
-                        } else if (distance == downDistanceMin) {
-                            int center = (left + right) / 2;
-                            int currentDistance = 0;
-                            int currentLeft = (int) downEvent.left;
-                            int currentRight = (int) downEvent.right;
-                            if (currentRight <= center) {
-                                currentDistance = center - currentRight;
-                            } else if (currentLeft >= center) {
-                                currentDistance = currentLeft - center;
-                            }
-
-                            int neighborDistance = 0;
-                            if (neighborRight <= center) {
-                                neighborDistance = center - neighborRight;
-                            } else if (neighborLeft >= center) {
-                                neighborDistance = neighborLeft - center;
-                            }
-                            if (neighborDistance < currentDistance) {
-                                downDistanceMin = distance;
-                                downEvent = neighbor;
-                            }
-                        }
-                    }
-                }
-
-                if (neighborLeft >= right) {
-                    // This neighbor is entirely to the right of me.
-                    // Take the closest neighbor in the y direction.
-                    int center = (top + bottom) / 2;
-                    int distance = 0;
-                    int neighborBottom = (int) neighbor.bottom;
-                    int neighborTop = (int) neighbor.top;
-                    if (neighborBottom <= center) {
-                        distance = center - neighborBottom;
-                    } else if (neighborTop >= center) {
-                        distance = neighborTop - center;
-                    }
-                    if (distance < rightDistanceMin) {
-                        rightDistanceMin = distance;
-                        rightEvent = neighbor;
-                    } else if (distance == rightDistanceMin) {
-                        // Pick the closest in the x direction
-                        int neighborDistance = neighborLeft - right;
-                        int currentDistance = (int) rightEvent.left - right;
-                        if (neighborDistance < currentDistance) {
-                            rightDistanceMin = distance;
-                            rightEvent = neighbor;
-                        }
-                    }
-                } else if (neighborRight <= left) {
-                    // This neighbor is entirely to the left of me.
-                    // Take the closest neighbor in the y direction.
-                    int center = (top + bottom) / 2;
-                    int distance = 0;
-                    int neighborBottom = (int) neighbor.bottom;
-                    int neighborTop = (int) neighbor.top;
-                    if (neighborBottom <= center) {
-                        distance = center - neighborBottom;
-                    } else if (neighborTop >= center) {
-                        distance = neighborTop - center;
-                    }
-                    if (distance < leftDistanceMin) {
-                        leftDistanceMin = distance;
-                        leftEvent = neighbor;
-                    } else if (distance == leftDistanceMin) {
-                        // Pick the closest in the x direction
-                        int neighborDistance = left - neighborRight;
-                        int currentDistance = left - (int) leftEvent.right;
-                        if (neighborDistance < currentDistance) {
-                            leftDistanceMin = distance;
-                            leftEvent = neighbor;
-                        }
-                    }
-                }
-            }
-            ev.nextUp = upEvent;
-            ev.nextDown = downEvent;
-            ev.nextLeft = leftEvent;
-            ev.nextRight = rightEvent;
         }
+
+        // Link each event to its nearest neighbor in the 4 directions.
+        mEventIndex.computeNeighbors(mSelectedEvents, box);
         setSelectedEvent(startEvent);
     }
 
@@ -4960,9 +4856,11 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         region.bottom = y + 10;
 
         EventGeometry geometry = mEventGeometry;
+        EventSpatialIndex eventIndex = getEventIndex();
+        numEvents = eventIndex.queryBand(date, region.top - top, region.bottom - top);
 
-        for (int i = 0; i < numEvents; i++) {
-            Event event = events.get(i);
+        for (int k = 0; k < numEvents; k++) {
+            Event event = events.get(eventIndex.getResult(k));
             // Compute the event rectangle.
             if (!geometry.computeEventRect(date, left, top, cellWidth, event)) {
                 continue;
@@ -5085,6 +4983,9 @@ public class DayView extends View implements View.OnCreateContextMenuListener,
         // Turn off scrolling to make sure the view is in the correct state if
         // we fling back to it
         mScrolling = false;
+        if (DEBUG) {
+            Log.d(TAG, EventLayoutCache.getInstance().toString());
+        }
     }
 
     private void eventClickCleanup() {
@@ -0,0 +1,115 @@
+package com.android.calendar;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the objects allocated by the onDraw of the calendar views, per view
+ * class. Off unless enabled with
+ * <pre>adb shell setprop log.tag.DrawAllocationAudit VERBOSE</pre>
+ * before the app starts. Every REPORT_FRAMES frames of a view a summary is
+ * logged, and {@link #dump} prints the totals, e.g. through
+ * <pre>adb shell dumpsys activity com.android.calendar</pre>
+ * The counts of a view that draws another one inside its onDraw, like
+ * DayView during a horizontal scroll, include the other view's. UI thread
+ * only.
+ */
+public final class DrawAllocationAudit {
+
+    private static final String TAG = "DrawAllocationAudit";
+    private static final int REPORT_FRAMES = 120;
+
+    private static final boolean ENABLED = Log.isLoggable(TAG, Log.VERBOSE);
+
+    private static final HashMap<String, Stats> sStats = new HashMap<String, Stats>();
+
+    static {
+        if (ENABLED) {
+            startAllocCounting();
+        }
+    }
+
+    private static class Stats {
+        long mFrames;
+        long mAllocations;
+        int mMaxAllocations;
+        int mFramesSinceReport;
+        int mAllocationsSinceReport;
+    }
+
+    private DrawAllocationAudit() {
+    }
+
+    /**
+     * Call at the start of onDraw.
+     *
+     * @return the token to pass to {@link #end}
+     */
+    public static int begin() {
+        return ENABLED ? getThreadAllocCount() : 0;
+    }
+
+    /**
+     * Call at the end of onDraw.
+     *
+     * @param view the name the frame is counted under
+     * @param token what {@link #begin} returned
+     */
+    public static void end(String view, int token) {
+        if (!ENABLED) {
+            return;
+        }
+        int allocations = getThreadAllocCount() - token;
+        Stats stats = sStats.get(view);
+        if (stats == null) {
+            stats = new Stats();
+            sStats.put(view, stats);
+        }
+        stats.mFrames++;
+        stats.mAllocations += allocations;
+        stats.mMaxAllocations = Math.max(stats.mMaxAllocations, allocations);
+        stats.mAllocationsSinceReport += allocations;
+        if (++stats.mFramesSinceReport == REPORT_FRAMES) {
+            Log.d(TAG, view + ": " + stats.mAllocationsSinceReport + " allocations in the last "
+                    + REPORT_FRAMES + " frames, at most " + stats.mMaxAllocations
+                    + " in one frame");
+            stats.mFramesSinceReport = 0;
+            stats.mAllocationsSinceReport = 0;
+        }
+    }
+
+    // Deprecated since API 23 but still kept by ART, and no other API counts per thread
+    @SuppressWarnings("deprecation")
+    private static void startAllocCounting() {
+        Debug.startAllocCounting();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static int getThreadAllocCount() {
+        return Debug.getThreadAllocCount();
+    }
+
+    public static void dump(String prefix, PrintWriter writer) {
+        if (!ENABLED) {
+            return;
+        }
+        writer.print(prefix);
+        writer.println("Draw allocations:");
+        for (Map.Entry<String, Stats> entry : sStats.entrySet()) {
+            Stats stats = entry.getValue();
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(entry.getKey());
+            writer.print(": frames=");
+            writer.print(stats.mFrames);
+            writer.print(" allocations=");
+            writer.print(stats.mAllocations);
+            writer.print(" max=");
+            writer.println(stats.mMaxAllocations);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.android.calendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Assigns the column of each event and the number of columns of the group of
+ * overlapping events it belongs to, see {@link Event#computePositions}. Sweeps
+ * the events in start order keeping the active ones in a heap ordered by end,
+ * so ended events are dropped without rescanning the others, and the taken
+ * columns in a BitSet, so any number of events can overlap.
+ */
+public final class EventColumnLayout {
+
+    private final BitSet mColumns = new BitSet();
+    private final ArrayList<Event> mGroup = new ArrayList<Event>();
+
+    /* min-heap of the active events, keyed by the time they stop overlapping */
+    private Event[] mActive = new Event[16];
+    private long[] mEnds = new long[16];
+    private int mActiveCount;
+
+    /**
+     * @param events the events, sorted into increasing time order
+     * @param minimumDurationMillis minimum duration of a timed event, so short
+     *        events get a rectangle tall enough to draw
+     */
+    public static void computePositions(List<Event> events, long minimumDurationMillis) {
+        if (events == null) {
+            return;
+        }
+        EventColumnLayout layout = new EventColumnLayout();
+        // all-day events are laid out in rows of their own
+        layout.layout(events, Math.max(minimumDurationMillis, 0), false);
+        layout.layout(events, 0, true);
+    }
+
+    private void layout(List<Event> events, long minimumDurationMillis, boolean allDay) {
+        int maxColumns = 0;
+        for (int i = 0, size = events.size(); i < size; i++) {
+            Event event = events.get(i);
+            if (event.drawAsAllday() != allDay) {
+                continue;
+            }
+
+            // An all-day event stops overlapping after its end day, a timed
+            // event at its end time, stretched to the minimum duration.
+            long start;
+            long end;
+            if (allDay) {
+                start = event.startDay - 1L;
+                end = event.endDay;
+            } else {
+                start = event.getStartMillis();
+                end = start + Math.max(event.getEndMillis() - start, minimumDurationMillis);
+            }
+            while (mActiveCount > 0 && mEnds[0] <= start) {
+                mColumns.clear(poll().getColumn());
+            }
+
+            if (mActiveCount == 0) {
+                finishGroup(maxColumns);
+                maxColumns = 0;
+            }
+
+            int column = mColumns.nextClearBit(0);
+            mColumns.set(column);
+            event.setColumn(column);
+            offer(event, end);
+            mGroup.add(event);
+            if (maxColumns < mActiveCount) {
+                maxColumns = mActiveCount;
+            }
+        }
+        finishGroup(maxColumns);
+
+        while (mActiveCount > 0) {
+            poll();
+        }
+        mColumns.clear();
+    }
+
+    private void finishGroup(int maxColumns) {
+        for (int i = 0, size = mGroup.size(); i < size; i++) {
+            mGroup.get(i).setMaxColumns(maxColumns);
+        }
+        mGroup.clear();
+    }
+
+    private void offer(Event event, long end) {
+        if (mActiveCount == mActive.length) {
+            mActive = Arrays.copyOf(mActive, mActiveCount * 2);
+            mEnds = Arrays.copyOf(mEnds, mActiveCount * 2);
+        }
+        int i = mActiveCount++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (mEnds[parent] <= end) {
+                break;
+            }
+            mActive[i] = mActive[parent];
+            mEnds[i] = mEnds[parent];
+            i = parent;
+        }
+        mActive[i] = event;
+        mEnds[i] = end;
+    }
+
+    private Event poll() {
+        Event first = mActive[0];
+        int last = --mActiveCount;
+        Event event = mActive[last];
+        long end = mEnds[last];
+        mActive[last] = null;
+        int i = 0;
+        int half = last >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < last && mEnds[child + 1] < mEnds[child]) {
+                child++;
+            }
+            if (end <= mEnds[child]) {
+                break;
+            }
+            mActive[i] = mActive[child];
+            mEnds[i] = mEnds[child];
+            i = child;
+        }
+        if (last > 0) {
+            mActive[i] = event;
+            mEnds[i] = end;
+        }
+        return first;
+    }
+}
@@ -27,6 +27,8 @@ public class EventGeometry {
     private float mHourGap;
     private float mMinEventHeight;
 
+    private final float[] mBounds = new float[2];
+
     void setCellMargin(int cellMargin) {
         mCellMargin = cellMargin;
     }
@@ -46,6 +48,25 @@ public class EventGeometry {
     // Computes the rectangle coordinates of the given event on the screen.
     // Returns true if the rectangle is visible on the screen.
     public boolean computeEventRect(int date, int left, int top, int cellWidth, Event event) {
+        float[] bounds = mBounds;
+        if (!computeEventBounds(date, top, event, bounds)) {
+            return false;
+        }
+        event.top = bounds[0];
+        event.bottom = bounds[1];
+
+        int col = event.getColumn();
+        int maxCols = event.getMaxColumns();
+        float colWidth = (float) (cellWidth - (maxCols + 1) * mCellMargin) / (float) maxCols;
+        event.left = left + col * (colWidth + mCellMargin);
+        event.right = event.left + colWidth;
+        return true;
+    }
+
+    // Computes the top and bottom of the given event on the given day into
+    // bounds[0] and bounds[1] without changing the event. Returns false if
+    // the event is not drawn in that day's column.
+    boolean computeEventBounds(int date, int top, Event event, float[] bounds) {
         if (event.drawAsAllday()) {
             return false;
         }
@@ -73,8 +94,6 @@ public class EventGeometry {
             endTime = DayView.MINUTES_PER_DAY;
         }
 
-        int col = event.getColumn();
-        int maxCols = event.getMaxColumns();
         int startHour = startTime / 60;
         int endHour = endTime / 60;
 
@@ -84,22 +103,20 @@ public class EventGeometry {
         if (endHour * 60 == endTime)
             endHour -= 1;
 
-        event.top = top;
-        event.top += (int) (startTime * cellMinuteHeight);
-        event.top += startHour * mHourGap;
+        float eventTop = top;
+        eventTop += (int) (startTime * cellMinuteHeight);
+        eventTop += startHour * mHourGap;
 
-        event.bottom = top;
-        event.bottom += (int) (endTime * cellMinuteHeight);
-        event.bottom += endHour * mHourGap - 1;
+        float eventBottom = top;
+        eventBottom += (int) (endTime * cellMinuteHeight);
+        eventBottom += endHour * mHourGap - 1;
 
         // Make the rectangle be at least mMinEventHeight pixels high
-        if (event.bottom < event.top + mMinEventHeight) {
-            event.bottom = event.top + mMinEventHeight;
+        if (eventBottom < eventTop + mMinEventHeight) {
+            eventBottom = eventTop + mMinEventHeight;
         }
-
-        float colWidth = (float) (cellWidth - (maxCols + 1) * mCellMargin) / (float) maxCols;
-        event.left = left + col * (colWidth + mCellMargin);
-        event.right = event.left + colWidth;
+        bounds[0] = eventTop;
+        bounds[1] = eventBottom;
         return true;
     }
 
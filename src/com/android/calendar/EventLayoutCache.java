@@ -0,0 +1,156 @@
+package com.android.calendar;
+
+import android.text.StaticLayout;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+/**
+ * Event text layouts shared by the DayViews of a DayFragment, so flipping to
+ * another day or week only lays out the events whose text, color or width
+ * changed. Layouts are keyed by event id, instance start, width bucket, text
+ * color and size and a hash of the text, which is checked on every hit. UI
+ * thread only.
+ */
+final class EventLayoutCache {
+
+    private static final int MAX_LAYOUTS = 512;
+    /* layouts are made this many pixels narrower at most, to share them
+     * between rectangles of almost the same width */
+    private static final int WIDTH_BUCKET = 4;
+
+    private static EventLayoutCache sInstance;
+
+    private final LruCache<Key, Entry> mLayouts = new LruCache<Key, Entry>(MAX_LAYOUTS);
+    private final Key mLookupKey = new Key();
+    private int mHitCount;
+    private int mMissCount;
+
+    private static final class Key {
+        long mId;
+        long mStartMillis;
+        int mWidth;
+        int mTextHash;
+        int mColor;
+        float mTextSize;
+
+        Key set(Event event, int width, int color, float textSize) {
+            mId = event.id;
+            mStartMillis = event.startMillis;
+            mWidth = width;
+            mTextHash = 31 * hash(event.title) + hash(event.location);
+            mColor = color;
+            mTextSize = textSize;
+            return this;
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.mId = mId;
+            key.mStartMillis = mStartMillis;
+            key.mWidth = mWidth;
+            key.mTextHash = mTextHash;
+            key.mColor = mColor;
+            key.mTextSize = mTextSize;
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mId == other.mId && mStartMillis == other.mStartMillis
+                    && mWidth == other.mWidth && mTextHash == other.mTextHash
+                    && mColor == other.mColor && mTextSize == other.mTextSize;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (mId ^ (mId >>> 32));
+            result = 31 * result + (int) (mStartMillis ^ (mStartMillis >>> 32));
+            result = 31 * result + mWidth;
+            result = 31 * result + mTextHash;
+            result = 31 * result + mColor;
+            return 31 * result + Float.floatToIntBits(mTextSize);
+        }
+
+        private static int hash(CharSequence text) {
+            return text != null ? text.toString().hashCode() : 0;
+        }
+    }
+
+    private static final class Entry {
+        final StaticLayout mLayout;
+        final CharSequence mTitle;
+        final CharSequence mLocation;
+
+        Entry(StaticLayout layout, CharSequence title, CharSequence location) {
+            mLayout = layout;
+            mTitle = title;
+            mLocation = location;
+        }
+    }
+
+    static EventLayoutCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new EventLayoutCache();
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the width to lay out the text of an event rectangle of the
+     *         given width with
+     */
+    static int getLayoutWidth(int width) {
+        return width >= WIDTH_BUCKET ? width - width % WIDTH_BUCKET : width;
+    }
+
+    /**
+     * @param width a width returned by {@link #getLayoutWidth(int)}
+     * @return the cached layout of the event, or null
+     */
+    StaticLayout get(Event event, int width, int color, float textSize) {
+        Entry entry = mLayouts.get(mLookupKey.set(event, width, color, textSize));
+        if (entry != null && TextUtils.equals(entry.mTitle, event.title)
+                && TextUtils.equals(entry.mLocation, event.location)) {
+            mHitCount++;
+            return entry.mLayout;
+        }
+        mMissCount++;
+        return null;
+    }
+
+    void put(Event event, int width, int color, float textSize, StaticLayout layout) {
+        mLayouts.put(mLookupKey.set(event, width, color, textSize).copy(),
+                new Entry(layout, event.title, event.location));
+    }
+
+    /**
+     * Drops every layout, e.g. when the locale or the font changed.
+     */
+    void clear() {
+        mLayouts.evictAll();
+    }
+
+    static void clearIfCreated() {
+        if (sInstance != null) {
+            sInstance.clear();
+        }
+    }
+
+    int getHitCount() {
+        return mHitCount;
+    }
+
+    int getMissCount() {
+        return mMissCount;
+    }
+
+    @Override
+    public String toString() {
+        return "EventLayoutCache[size=" + mLayouts.size() + ", hits=" + mHitCount
+                + ", misses=" + mMissCount + "]";
+    }
+}
@@ -0,0 +1,554 @@
+package com.android.calendar;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Attendees;
+import android.provider.CalendarContract.Events;
+import android.provider.CalendarContract.Instances;
+import android.text.format.DateUtils;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Copy of the text the provider searches in (title, description, location
+ * and the names and emails of the attendees) kept in the app's own database,
+ * indexed by the substrings starting at each character, so searching does
+ * not need a LIKE scan of every instance in the provider. A search runs the
+ * provider's own LIKE matching on the events the substrings and the range
+ * of their instances leave, and finds the same events.
+ *
+ * The index follows the provider through a content observer, on a
+ * background thread. The provider only tells that something changed, and
+ * events have no modification time to ask for the changed rows by, so a
+ * rescan reads every event and attendee and rewrites the ones whose text or
+ * dates differ. To keep that cost off the rest of the app, changes are only
+ * rescanned for while a search screen is resumed, see resume(), and caught
+ * up with when one comes back. Searches are not answered until the rescan
+ * is done.
+ */
+public final class EventSearchIndex {
+
+    private static final String TAG = "EventSearchIndex";
+
+    private static final String DATABASE_NAME = "search_index.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE_EVENTS = "events";
+    private static final String TABLE_GRAMS = "grams";
+
+    // Batches the notifications of a sync or a bulk edit into one rescan
+    private static final long SYNC_DELAY = 1000; // ms
+    // Above this many matching events the provider search is as fast
+    private static final int MAX_CANDIDATES = 500;
+    // Length of the substrings indexed at each character
+    private static final int GRAM_LENGTH = 3;
+    // Substrings of a term looked up, more narrow the events down little
+    private static final int MAX_TERM_GRAMS = 4;
+
+    // How the provider splits a search into terms, words or quoted phrases
+    private static final Pattern SEARCH_TOKEN_PATTERN =
+            Pattern.compile("[^\\s\"'.?!,]+|\"([^\"]*)\"");
+    private static final String SEARCH_ESCAPE_CHAR = "#";
+    private static final Pattern SEARCH_ESCAPE_PATTERN =
+            Pattern.compile("([%_" + SEARCH_ESCAPE_CHAR + "])");
+    // The columns every term is matched against, as the provider does
+    private static final String[] SEARCH_COLUMNS = new String[] {
+            "title",
+            "description",
+            "event_location",
+            "attendee_emails",
+            "attendee_names",
+    };
+
+    private static final String[] EVENT_PROJECTION = new String[] {
+            Events._ID,
+            Events.TITLE,
+            Events.DESCRIPTION,
+            Events.EVENT_LOCATION,
+            Events.DTSTART,
+            Events.LAST_DATE,
+    };
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_TITLE = 1;
+    private static final int INDEX_DESCRIPTION = 2;
+    private static final int INDEX_LOCATION = 3;
+    private static final int INDEX_DTSTART = 4;
+    private static final int INDEX_LAST_DATE = 5;
+
+    private static final String[] ATTENDEE_PROJECTION = new String[] {
+            Attendees.EVENT_ID,
+            Attendees.ATTENDEE_NAME,
+            Attendees.ATTENDEE_EMAIL,
+    };
+    private static final int INDEX_ATTENDEE_EVENT_ID = 0;
+    private static final int INDEX_ATTENDEE_NAME = 1;
+    private static final int INDEX_ATTENDEE_EMAIL = 2;
+
+    private static EventSearchIndex sInstance;
+
+    private final ContentResolver mResolver;
+    private final OpenHelper mHelper;
+    private final Handler mWorker;
+    // Changes seen in the provider, and how many of them the index has caught up with
+    private final AtomicInteger mChanges = new AtomicInteger();
+    private volatile int mSyncedChanges = -1;
+    // Search screens resumed, only changed on the main thread
+    private volatile int mResumed;
+
+    private final Runnable mSync = new Runnable() {
+        @Override
+        public void run() {
+            sync();
+        }
+    };
+
+    private static class OpenHelper extends SQLiteOpenHelper {
+        OpenHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            // Searches read while a rescan writes
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE " + TABLE_EVENTS + " ("
+                    + "_id INTEGER PRIMARY KEY,"
+                    + "hash INTEGER NOT NULL,"
+                    + "dtstart INTEGER NOT NULL,"
+                    + "last_date INTEGER NOT NULL,"
+                    + "title TEXT,"
+                    + "description TEXT,"
+                    + "event_location TEXT,"
+                    + "attendee_emails TEXT,"
+                    + "attendee_names TEXT)");
+            db.execSQL("CREATE TABLE " + TABLE_GRAMS + " ("
+                    + "gram TEXT NOT NULL,"
+                    + "event_id INTEGER NOT NULL,"
+                    + "PRIMARY KEY (gram, event_id)) WITHOUT ROWID");
+            db.execSQL("CREATE INDEX grams_event_id ON " + TABLE_GRAMS + " (event_id)");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // Rebuilt from the provider on the next rescan
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_EVENTS);
+            db.execSQL("DROP TABLE IF EXISTS tokens");
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_GRAMS);
+            onCreate(db);
+        }
+    }
+
+    /**
+     * Returns the index, creating it on first use. It is brought up to date
+     * by resume().
+     */
+    public static synchronized EventSearchIndex getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new EventSearchIndex(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private EventSearchIndex(Context context) {
+        mResolver = context.getContentResolver();
+        mHelper = new OpenHelper(context);
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mWorker = new Handler(thread.getLooper());
+        // Without a handler the change is counted as soon as it is delivered,
+        // even while a rescan keeps the worker busy. Events and attendees are
+        // both under the provider's root uri.
+        mResolver.registerContentObserver(CalendarContract.CONTENT_URI, true,
+                new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        mChanges.incrementAndGet();
+                        if (mResumed > 0) {
+                            mWorker.removeCallbacks(mSync);
+                            mWorker.postDelayed(mSync, SYNC_DELAY);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Called when a search screen is resumed. Brings the index up to date
+     * and keeps it following the provider until the screen is paused.
+     */
+    public void resume() {
+        mResumed++;
+        if (!isReady()) {
+            mWorker.removeCallbacks(mSync);
+            mWorker.post(mSync);
+        }
+    }
+
+    /**
+     * Called when a search screen is paused, changes from now on are only
+     * rescanned for once a search screen is resumed again.
+     */
+    public void pause() {
+        mResumed--;
+    }
+
+    /**
+     * @return whether the index has caught up with every change seen in the
+     *         provider, so searches can be answered
+     */
+    public boolean isReady() {
+        return mSyncedChanges == mChanges.get();
+    }
+
+    private void sync() {
+        // A change arriving during the rescan may be missed by it
+        int changes = mChanges.get();
+        HashMap<Long, String[]> attendees;
+        Cursor events;
+        try {
+            attendees = queryAttendees();
+            events = mResolver.query(Events.CONTENT_URI, EVENT_PROJECTION, null, null, null);
+        } catch (SecurityException e) {
+            // No calendar permission yet, the next change will retry
+            Log.w(TAG, "Cannot read events", e);
+            return;
+        }
+        if (attendees == null || events == null) {
+            if (events != null) {
+                events.close();
+            }
+            return;
+        }
+
+        try {
+            SQLiteDatabase db = mHelper.getWritableDatabase();
+            HashMap<Long, Long> hashes = new HashMap<Long, Long>();
+            Cursor stored = db.query(TABLE_EVENTS, new String[] { "_id", "hash" },
+                    null, null, null, null, null);
+            try {
+                while (stored.moveToNext()) {
+                    hashes.put(stored.getLong(0), stored.getLong(1));
+                }
+            } finally {
+                stored.close();
+            }
+
+            int updated = 0;
+            db.beginTransaction();
+            try {
+                SQLiteStatement insertEvent = db.compileStatement("INSERT OR REPLACE INTO "
+                        + TABLE_EVENTS + " (_id, hash, dtstart, last_date, title, description,"
+                        + " event_location, attendee_emails, attendee_names)"
+                        + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                SQLiteStatement insertGram = db.compileStatement("INSERT OR IGNORE INTO "
+                        + TABLE_GRAMS + " (gram, event_id) VALUES (?, ?)");
+                SQLiteStatement deleteEvent = db.compileStatement("DELETE FROM "
+                        + TABLE_EVENTS + " WHERE _id = ?");
+                SQLiteStatement deleteGrams = db.compileStatement("DELETE FROM "
+                        + TABLE_GRAMS + " WHERE event_id = ?");
+                LinkedHashSet<String> grams = new LinkedHashSet<String>();
+
+                while (events.moveToNext()) {
+                    long id = events.getLong(INDEX_ID);
+                    String[] text = new String[SEARCH_COLUMNS.length];
+                    text[0] = events.getString(INDEX_TITLE);
+                    text[1] = events.getString(INDEX_DESCRIPTION);
+                    text[2] = events.getString(INDEX_LOCATION);
+                    String[] people = attendees.get(id);
+                    if (people != null) {
+                        text[3] = people[1];
+                        text[4] = people[0];
+                    }
+                    long dtstart = events.getLong(INDEX_DTSTART);
+                    // Repeats forever if there is no last date
+                    long lastDate = events.isNull(INDEX_LAST_DATE)
+                            ? Long.MAX_VALUE : events.getLong(INDEX_LAST_DATE);
+                    long hash = hash(text, dtstart, lastDate);
+                    Long storedHash = hashes.remove(id);
+                    if (storedHash != null && storedHash == hash) {
+                        continue;
+                    }
+
+                    deleteGrams.bindLong(1, id);
+                    deleteGrams.executeUpdateDelete();
+                    grams.clear();
+                    for (String value : text) {
+                        addGrams(value, grams);
+                    }
+                    for (String gram : grams) {
+                        insertGram.bindString(1, gram);
+                        insertGram.bindLong(2, id);
+                        insertGram.executeInsert();
+                    }
+                    insertEvent.bindLong(1, id);
+                    insertEvent.bindLong(2, hash);
+                    insertEvent.bindLong(3, dtstart);
+                    insertEvent.bindLong(4, lastDate);
+                    for (int i = 0; i < text.length; i++) {
+                        if (text[i] == null) {
+                            insertEvent.bindNull(5 + i);
+                        } else {
+                            insertEvent.bindString(5 + i, text[i]);
+                        }
+                    }
+                    insertEvent.executeInsert();
+                    updated++;
+                }
+
+                // Whatever is left was deleted
+                for (Long id : hashes.keySet()) {
+                    deleteGrams.bindLong(1, id);
+                    deleteGrams.executeUpdateDelete();
+                    deleteEvent.bindLong(1, id);
+                    deleteEvent.executeUpdateDelete();
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Indexed " + updated + " events, removed " + hashes.size());
+            }
+            mSyncedChanges = changes;
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to update the search index", e);
+        } finally {
+            events.close();
+        }
+    }
+
+    /**
+     * Reads the names and the emails of the attendees of every event, each
+     * joined with commas like the provider's group_concat, or null if they
+     * cannot be read.
+     */
+    private HashMap<Long, String[]> queryAttendees() {
+        Cursor cursor = mResolver.query(Attendees.CONTENT_URI, ATTENDEE_PROJECTION,
+                null, null, null);
+        if (cursor == null) {
+            return null;
+        }
+        HashMap<Long, String[]> attendees = new HashMap<Long, String[]>();
+        try {
+            while (cursor.moveToNext()) {
+                long eventId = cursor.getLong(INDEX_ATTENDEE_EVENT_ID);
+                String[] people = attendees.get(eventId);
+                if (people == null) {
+                    people = new String[2];
+                    attendees.put(eventId, people);
+                }
+                people[0] = concat(people[0], cursor.getString(INDEX_ATTENDEE_NAME));
+                people[1] = concat(people[1], cursor.getString(INDEX_ATTENDEE_EMAIL));
+            }
+        } finally {
+            cursor.close();
+        }
+        return attendees;
+    }
+
+    private static String concat(String values, String value) {
+        if (value == null) {
+            return values;
+        }
+        return values == null ? value : values + "," + value;
+    }
+
+    private static long hash(String[] text, long dtstart, long lastDate) {
+        long hash = 17;
+        for (String value : text) {
+            hash = 31 * hash + (value == null ? -1 : value.hashCode());
+        }
+        hash = 31 * hash + dtstart;
+        hash = 31 * hash + lastDate;
+        return hash;
+    }
+
+    /**
+     * Folds the case of the text one character at a time, so the text keeps
+     * its length and whatever LIKE matches without regard to case matches
+     * here as a plain substring.
+     */
+    static String fold(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Adds to out the substrings of the folded text starting at each
+     * character, GRAM_LENGTH long or up to the end of the text. Surrogate
+     * pairs are kept whole.
+     */
+    static void addGrams(String text, Collection<String> out) {
+        if (text == null) {
+            return;
+        }
+        String folded = fold(text);
+        int length = folded.length();
+        for (int i = 0; i < length; i++) {
+            if (i > 0 && Character.isSurrogatePair(folded.charAt(i - 1), folded.charAt(i))) {
+                continue;
+            }
+            int end = Math.min(i + GRAM_LENGTH, length);
+            if (end < length && Character.isSurrogatePair(folded.charAt(end - 1),
+                    folded.charAt(end))) {
+                end++;
+            }
+            out.add(folded.substring(i, end));
+        }
+    }
+
+    /**
+     * Narrows the events down to the ones with the substrings a match of the
+     * term needs. Leaves out nothing the term can match.
+     */
+    private static void appendGramSelection(String term, StringBuilder sql,
+            ArrayList<String> args) {
+        String folded = fold(term);
+        int length = folded.length();
+        for (int i = 0; i < length; i++) {
+            // Left to the LIKE, the grams of the text keep pairs whole
+            if (Character.isSurrogate(folded.charAt(i))) {
+                return;
+            }
+        }
+        if (length == 0 || folded.charAt(length - 1) == Character.MAX_VALUE) {
+            return;
+        }
+        if (length < GRAM_LENGTH) {
+            // The gram starting where the term matches starts with the term;
+            // those sort between the term and the term with its last
+            // character incremented
+            sql.append(" AND _id IN (SELECT event_id FROM ").append(TABLE_GRAMS)
+                    .append(" WHERE gram >= ? AND gram < ?)");
+            args.add(folded);
+            args.add(folded.substring(0, length - 1)
+                    + (char) (folded.charAt(length - 1) + 1));
+            return;
+        }
+        // Every gram of the term is a gram of the text, some spread over it do
+        int count = Math.min(MAX_TERM_GRAMS, length - GRAM_LENGTH + 1);
+        LinkedHashSet<String> grams = new LinkedHashSet<String>();
+        for (int k = 0; k < count; k++) {
+            int i = count == 1 ? 0 : k * (length - GRAM_LENGTH) / (count - 1);
+            grams.add(folded.substring(i, i + GRAM_LENGTH));
+        }
+        for (String gram : grams) {
+            sql.append(" AND _id IN (SELECT event_id FROM ").append(TABLE_GRAMS)
+                    .append(" WHERE gram = ?)");
+            args.add(gram);
+        }
+    }
+
+    /**
+     * Splits a search into terms the way the provider does.
+     */
+    static ArrayList<String> splitTerms(String query) {
+        ArrayList<String> terms = new ArrayList<String>();
+        Matcher matcher = SEARCH_TOKEN_PATTERN.matcher(query);
+        while (matcher.find()) {
+            terms.add(matcher.group(1) != null ? matcher.group(1) : matcher.group());
+        }
+        return terms;
+    }
+
+    /**
+     * Builds a selection on Instances for the events matching the search
+     * query that can have instances between the days. Every term of the
+     * query has to be in the title, description or location of the event or
+     * in the names or emails of its attendees, as in the provider's search.
+     *
+     * @return the selection, or null if the index cannot answer and the
+     *         provider's search has to be used
+     */
+    public String buildInstancesSelection(String query, int startDay, int endDay) {
+        if (!isReady() || query == null) {
+            return null;
+        }
+        ArrayList<String> terms = splitTerms(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        for (String term : terms) {
+            if (term.indexOf(',') >= 0) {
+                // Could match across the attendees the provider joins with commas
+                return null;
+            }
+        }
+
+        // Days to millis with a day to spare on each side for the time zone
+        long rangeStart = (startDay - Time.EPOCH_JULIAN_DAY - 1) * DateUtils.DAY_IN_MILLIS;
+        long rangeEnd = (endDay - Time.EPOCH_JULIAN_DAY + 2) * DateUtils.DAY_IN_MILLIS;
+        StringBuilder sql = new StringBuilder("SELECT _id FROM ").append(TABLE_EVENTS)
+                .append(" WHERE dtstart < ? AND last_date >= ?");
+        ArrayList<String> args = new ArrayList<String>();
+        args.add(Long.toString(rangeEnd));
+        args.add(Long.toString(rangeStart));
+        for (String term : terms) {
+            appendGramSelection(term, sql, args);
+        }
+        for (String term : terms) {
+            String like = "%" + SEARCH_ESCAPE_PATTERN.matcher(term)
+                    .replaceAll(SEARCH_ESCAPE_CHAR + "$1") + "%";
+            sql.append(" AND (");
+            for (int i = 0; i < SEARCH_COLUMNS.length; i++) {
+                if (i > 0) {
+                    sql.append(" OR ");
+                }
+                sql.append(SEARCH_COLUMNS[i]).append(" LIKE ? ESCAPE '")
+                        .append(SEARCH_ESCAPE_CHAR).append('\'');
+                args.add(like);
+            }
+            sql.append(')');
+        }
+        sql.append(" LIMIT ").append(MAX_CANDIDATES + 1);
+
+        StringBuilder ids = new StringBuilder();
+        int count = 0;
+        Cursor cursor = null;
+        try {
+            cursor = mHelper.getReadableDatabase().rawQuery(sql.toString(),
+                    args.toArray(new String[args.size()]));
+            count = cursor.getCount();
+            if (count > MAX_CANDIDATES) {
+                return null;
+            }
+            while (cursor.moveToNext()) {
+                if (ids.length() > 0) {
+                    ids.append(',');
+                }
+                ids.append(cursor.getLong(0));
+            }
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Search index query failed", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        if (count == 0) {
+            return "0";
+        }
+        return Instances.EVENT_ID + " IN (" + ids + ")";
+    }
+}
@@ -0,0 +1,475 @@
+package com.android.calendar;
+
+import android.graphics.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Index over the timed events of a DayView, built once per layout. For each
+ * shown day it keeps the events drawn in that day's column, and their
+ * vertical extent sorted by top with a running maximum of the bottoms, so the
+ * events crossing a band of the column are found with a binary search instead
+ * of computing the rectangle of every event. Queries only prune: callers
+ * still compute and check the exact rectangles of the events returned, which
+ * are always in increasing list order.
+ * <p>
+ * It also links the events of a selection to their nearest neighbors for
+ * keyboard and trackball navigation, see {@link #computeNeighbors}. UI thread
+ * only.
+ */
+final class EventSpatialIndex {
+
+    // Rounding of the index may differ from the drawn rectangles by a
+    // fraction of a pixel, so bands are widened by this much.
+    private static final float SLOP = 1f;
+
+    private ArrayList<Event> mEvents;
+    private int mEventCount;
+    private int mFirstDay;
+    private int mNumDays;
+    private boolean mValid;
+
+    /* events shown on day d are mIndices[mDayStarts[d]..mDayStarts[d + 1]) */
+    private int[] mDayStarts = new int[1];
+    private int[] mIndices = new int[0];
+    /* the same events of each day sorted by top, with their extent */
+    private int[] mSorted = new int[0];
+    private float[] mTops = new float[0];
+    private float[] mBottoms = new float[0];
+    private float[] mMaxBottoms = new float[0];
+
+    private int[] mResults = new int[16];
+    private int mResultCount;
+
+    private final float[] mBounds = new float[2];
+    private long[] mKeys = new long[0];
+
+    // Same as the "any large number" the nearest neighbor search used to
+    // start from, nothing this far away is a neighbor.
+    private static final int NO_NEIGHBOR_DISTANCE = 10000;
+
+    /* the selected events' rectangles truncated to ints, and their times */
+    private int[] mLefts = new int[0];
+    private int[] mRights = new int[0];
+    private int[] mEventTops = new int[0];
+    private int[] mEventBottoms = new int[0];
+    private int[] mStartTimes = new int[0];
+    private int[] mEndTimes = new int[0];
+    /* the selected events ordered by end time descending, start time,
+     * left and right descending, ties in list order */
+    private int[] mByEnd = new int[0];
+    private int[] mByStart = new int[0];
+    private int[] mByLeft = new int[0];
+    private int[] mByRight = new int[0];
+
+    /**
+     * Drops the index, e.g. when the events were laid out again.
+     */
+    void invalidate() {
+        mValid = false;
+    }
+
+    boolean isValid(ArrayList<Event> events, int firstDay, int numDays) {
+        return mValid && mEvents == events && mEventCount == events.size()
+                && mFirstDay == firstDay && mNumDays == numDays;
+    }
+
+    /**
+     * Indexes the timed events shown on the given days, as laid out by the
+     * given geometry.
+     */
+    void build(ArrayList<Event> events, int firstDay, int numDays, EventGeometry geometry) {
+        mEvents = events;
+        mEventCount = events.size();
+        mFirstDay = firstDay;
+        mNumDays = numDays;
+        mValid = true;
+
+        if (mDayStarts.length < numDays + 1) {
+            mDayStarts = new int[numDays + 1];
+        }
+        int total = 0;
+        for (int i = 0; i < mEventCount; i++) {
+            Event event = events.get(i);
+            if (event.drawAsAllday()) {
+                continue;
+            }
+            int start = Math.max(event.startDay, firstDay);
+            int end = Math.min(event.endDay, firstDay + numDays - 1);
+            if (start <= end) {
+                total += end - start + 1;
+            }
+        }
+        if (mIndices.length < total) {
+            mIndices = new int[total];
+            mSorted = new int[total];
+            mTops = new float[total];
+            mBottoms = new float[total];
+            mMaxBottoms = new float[total];
+            mKeys = new long[total];
+        }
+
+        int pos = 0;
+        float[] bounds = mBounds;
+        for (int day = 0; day < numDays; day++) {
+            int date = firstDay + day;
+            int dayStart = pos;
+            mDayStarts[day] = dayStart;
+            for (int i = 0; i < mEventCount; i++) {
+                Event event = events.get(i);
+                if (!geometry.computeEventBounds(date, 0, event, bounds)) {
+                    continue;
+                }
+                mIndices[pos] = i;
+                // tops are never negative, so their bits sort like the floats
+                mKeys[pos] = ((long) Float.floatToIntBits(bounds[0]) << 32) | (pos - dayStart);
+                pos++;
+            }
+            Arrays.sort(mKeys, dayStart, pos);
+            float maxBottom = Float.NEGATIVE_INFINITY;
+            for (int j = dayStart; j < pos; j++) {
+                int index = mIndices[dayStart + (int) mKeys[j]];
+                geometry.computeEventBounds(date, 0, events.get(index), bounds);
+                mSorted[j] = index;
+                mTops[j] = bounds[0];
+                mBottoms[j] = bounds[1];
+                maxBottom = Math.max(maxBottom, bounds[1]);
+                mMaxBottoms[j] = maxBottom;
+            }
+        }
+        mDayStarts[numDays] = pos;
+    }
+
+    /**
+     * Finds the events drawn on the given day, in list order.
+     *
+     * @return the number of events, see {@link #getResult(int)}
+     */
+    int queryDay(int date) {
+        mResultCount = 0;
+        int day = date - mFirstDay;
+        if (day < 0 || day >= mNumDays) {
+            return queryAll();
+        }
+        int start = mDayStarts[day];
+        int end = mDayStarts[day + 1];
+        ensureResultCapacity(end - start);
+        System.arraycopy(mIndices, start, mResults, 0, end - start);
+        mResultCount = end - start;
+        return mResultCount;
+    }
+
+    /**
+     * Finds the events drawn on the given day that may intersect the band
+     * from top to bottom, in list order. The band is relative to the top of
+     * the first hour.
+     *
+     * @return the number of events, see {@link #getResult(int)}
+     */
+    int queryBand(int date, float top, float bottom) {
+        mResultCount = 0;
+        int day = date - mFirstDay;
+        if (day < 0 || day >= mNumDays) {
+            return queryAll();
+        }
+        int start = mDayStarts[day];
+        int end = mDayStarts[day + 1];
+        top -= SLOP;
+        bottom += SLOP;
+
+        // the events starting above the bottom of the band
+        int lo = start;
+        int hi = end;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mTops[mid] < bottom) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        // and of those, the ones ending below its top
+        for (int j = lo - 1; j >= start && mMaxBottoms[j] >= top; j--) {
+            if (mBottoms[j] >= top) {
+                ensureResultCapacity(mResultCount + 1);
+                mResults[mResultCount++] = mSorted[j];
+            }
+        }
+        Arrays.sort(mResults, 0, mResultCount);
+        return mResultCount;
+    }
+
+    /**
+     * @return the list index of the i-th event found by the last query
+     */
+    int getResult(int i) {
+        return mResults[i];
+    }
+
+    private int queryAll() {
+        int count = mEventCount;
+        ensureResultCapacity(count);
+        for (int i = 0; i < count; i++) {
+            mResults[i] = i;
+        }
+        mResultCount = count;
+        return count;
+    }
+
+    private void ensureResultCapacity(int capacity) {
+        if (mResults.length < capacity) {
+            mResults = Arrays.copyOf(mResults, Math.max(capacity, mResults.length * 2));
+        }
+    }
+
+    /**
+     * Sets nextUp, nextDown, nextLeft and nextRight of each of the given
+     * events, which must have their rectangles computed, to the nearest
+     * event in that direction. An event is above or below another if it
+     * ends before the other starts and they share some of the column, it is
+     * left or right of another if they do not share any of it; the nearest
+     * is the closest in time for up and down, and the closest to the
+     * vertical center of the event, clipped to the selection box, for left
+     * and right. Remaining ties go to the event closest across, then to the
+     * first in the list.
+     */
+    void computeNeighbors(ArrayList<Event> events, Rect box) {
+        int len = events.size();
+        if (mLefts.length < len) {
+            int capacity = Math.max(len, mLefts.length * 2);
+            mLefts = new int[capacity];
+            mRights = new int[capacity];
+            mEventTops = new int[capacity];
+            mEventBottoms = new int[capacity];
+            mStartTimes = new int[capacity];
+            mEndTimes = new int[capacity];
+            mByEnd = new int[capacity];
+            mByStart = new int[capacity];
+            mByLeft = new int[capacity];
+            mByRight = new int[capacity];
+        }
+        if (mKeys.length < len) {
+            mKeys = new long[len];
+        }
+        for (int i = 0; i < len; i++) {
+            Event ev = events.get(i);
+            mLefts[i] = (int) ev.left;
+            mRights[i] = (int) ev.right;
+            mEventTops[i] = (int) ev.top;
+            mEventBottoms[i] = (int) ev.bottom;
+            mStartTimes[i] = ev.startTime;
+            mEndTimes[i] = ev.endTime;
+        }
+        sortBy(mEndTimes, true, len, mByEnd);
+        sortBy(mStartTimes, false, len, mByStart);
+        sortBy(mLefts, false, len, mByLeft);
+        sortBy(mRights, true, len, mByRight);
+
+        for (int i = 0; i < len; i++) {
+            Event ev = events.get(i);
+            int top = Math.max(mEventTops[i], box.top);
+            int bottom = Math.min(mEventBottoms[i], box.bottom);
+            ev.nextUp = findUp(events, i);
+            ev.nextDown = findDown(events, i);
+            ev.nextRight = findRight(events, i, (top + bottom) / 2);
+            ev.nextLeft = findLeft(events, i, (top + bottom) / 2);
+        }
+    }
+
+    private Event findUp(ArrayList<Event> events, int i) {
+        int startTime = mStartTimes[i];
+        int left = mLefts[i];
+        int right = mRights[i];
+        int center = (left + right) / 2;
+        int best = -1;
+        int bestEnd = 0;
+        int bestCenterDistance = 0;
+        // first of the events ending at or before the start of this one,
+        // latest end first
+        int lo = 0;
+        int hi = events.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mEndTimes[mByEnd[mid]] > startTime) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < events.size(); k++) {
+            int j = mByEnd[k];
+            if (best != -1 && mEndTimes[j] < bestEnd) {
+                break;
+            }
+            if (j == i || mLefts[j] >= right || mRights[j] <= left) {
+                continue;
+            }
+            int centerDistance = distanceAcross(mLefts[j], mRights[j], center);
+            if (best == -1) {
+                if (startTime - mEndTimes[j] >= NO_NEIGHBOR_DISTANCE) {
+                    break;
+                }
+                best = j;
+                bestEnd = mEndTimes[j];
+                bestCenterDistance = centerDistance;
+            } else if (centerDistance < bestCenterDistance) {
+                best = j;
+                bestCenterDistance = centerDistance;
+            }
+        }
+        return best != -1 ? events.get(best) : null;
+    }
+
+    private Event findDown(ArrayList<Event> events, int i) {
+        int startTime = mStartTimes[i];
+        int endTime = mEndTimes[i];
+        int left = mLefts[i];
+        int right = mRights[i];
+        int center = (left + right) / 2;
+        int best = -1;
+        int bestStart = 0;
+        int bestCenterDistance = 0;
+        // first of the events starting at or after the end of this one,
+        // earliest start first
+        int lo = 0;
+        int hi = events.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mStartTimes[mByStart[mid]] < endTime) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < events.size(); k++) {
+            int j = mByStart[k];
+            if (best != -1 && mStartTimes[j] > bestStart) {
+                break;
+            }
+            // an event that is also above this one only counts as above
+            if (j == i || mEndTimes[j] <= startTime
+                    || mLefts[j] >= right || mRights[j] <= left) {
+                continue;
+            }
+            int centerDistance = distanceAcross(mLefts[j], mRights[j], center);
+            if (best == -1) {
+                if (mStartTimes[j] - endTime >= NO_NEIGHBOR_DISTANCE) {
+                    break;
+                }
+                best = j;
+                bestStart = mStartTimes[j];
+                bestCenterDistance = centerDistance;
+            } else if (centerDistance < bestCenterDistance) {
+                best = j;
+                bestCenterDistance = centerDistance;
+            }
+        }
+        return best != -1 ? events.get(best) : null;
+    }
+
+    private Event findRight(ArrayList<Event> events, int i, int center) {
+        int right = mRights[i];
+        int best = -1;
+        int bestDistance = NO_NEIGHBOR_DISTANCE;
+        int bestGap = 0;
+        // first of the events starting at or right of the right edge of this
+        // one, closest first
+        int lo = 0;
+        int hi = events.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mLefts[mByLeft[mid]] < right) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < events.size(); k++) {
+            int j = mByLeft[k];
+            int gap = mLefts[j] - right;
+            if (best != -1 && bestDistance == 0 && gap > bestGap) {
+                break;
+            }
+            if (j == i) {
+                continue;
+            }
+            int distance = distanceAcross(mEventTops[j], mEventBottoms[j], center);
+            if (distance < bestDistance || (distance == bestDistance && best != -1
+                    && gap < bestGap)) {
+                best = j;
+                bestDistance = distance;
+                bestGap = gap;
+            }
+        }
+        return best != -1 ? events.get(best) : null;
+    }
+
+    private Event findLeft(ArrayList<Event> events, int i, int center) {
+        int left = mLefts[i];
+        int right = mRights[i];
+        int best = -1;
+        int bestDistance = NO_NEIGHBOR_DISTANCE;
+        int bestGap = 0;
+        // first of the events ending at or left of the left edge of this
+        // one, closest first
+        int lo = 0;
+        int hi = events.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (mRights[mByRight[mid]] > left) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int k = lo; k < events.size(); k++) {
+            int j = mByRight[k];
+            int gap = left - mRights[j];
+            if (best != -1 && bestDistance == 0 && gap > bestGap) {
+                break;
+            }
+            // an event that is also right of this one only counts as right
+            if (j == i || mLefts[j] >= right) {
+                continue;
+            }
+            int distance = distanceAcross(mEventTops[j], mEventBottoms[j], center);
+            if (distance < bestDistance || (distance == bestDistance && best != -1
+                    && gap < bestGap)) {
+                best = j;
+                bestDistance = distance;
+                bestGap = gap;
+            }
+        }
+        return best != -1 ? events.get(best) : null;
+    }
+
+    /**
+     * @return how far the given point is from the range from start to end,
+     *         0 if the range crosses it
+     */
+    private static int distanceAcross(int start, int end, int point) {
+        if (end <= point) {
+            return point - end;
+        } else if (start >= point) {
+            return start - point;
+        }
+        return 0;
+    }
+
+    /**
+     * Fills order with the indices 0..len-1 sorted by the given values, ties
+     * in increasing index order.
+     */
+    private void sortBy(int[] values, boolean descending, int len, int[] order) {
+        long[] keys = mKeys;
+        for (int i = 0; i < len; i++) {
+            int value = descending ? -values[i] : values[i];
+            keys[i] = ((long) value << 32) | i;
+        }
+        Arrays.sort(keys, 0, len);
+        for (int i = 0; i < len; i++) {
+            order[i] = (int) keys[i];
+        }
+    }
+}
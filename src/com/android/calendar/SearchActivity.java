@@ -35,6 +35,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.provider.CalendarContract.Events;
 import android.provider.SearchRecentSuggestions;
+import android.text.TextUtils;
 import android.text.format.Time;
 import android.util.Log;
 import android.view.Menu;
@@ -66,6 +67,9 @@ public class SearchActivity extends Activity implements
     private static final int MAX_SEARCH_LENGTH = 50;
     /* @} */
 
+    // Lets a few keystrokes pile up before searching as the user types
+    private static final long SEARCH_AS_YOU_TYPE_DELAY = 100; // ms
+
     protected static final String BUNDLE_KEY_RESTORE_TIME = "key_restore_time";
 
     protected static final String BUNDLE_KEY_RESTORE_SEARCH_QUERY = "key_restore_search_query";
@@ -91,6 +95,14 @@ public class SearchActivity extends Activity implements
     private ContentResolver mContentResolver;
     private int mNeedRequestPermissions = 0;
 
+    private final Runnable mSearchAsYouType = new Runnable() {
+        @Override
+        public void run() {
+            mController.sendEvent(SearchActivity.this, EventType.SEARCH, null, null, -1,
+                    ViewType.CURRENT, 0, mQuery, getComponentName());
+        }
+    };
+
     private final ContentObserver mObserver = new ContentObserver(new Handler()) {
         @Override
         public boolean deliverSelfNotifications() {
@@ -130,7 +142,6 @@ public class SearchActivity extends Activity implements
 
         mController = CalendarController.getInstance(this);
         mHandler = new Handler();
-
         mIsMultipane = Utils.getConfigBool(this, R.bool.multiple_pane_config);
         mShowEventDetailsWithAgenda = Utils.getConfigBool(this,
                 R.bool.show_event_details_with_agenda);
@@ -202,6 +213,7 @@ public class SearchActivity extends Activity implements
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        mHandler.removeCallbacks(mSearchAsYouType);
         mController.deregisterAllEventHandlers();
         CalendarController.removeInstance(this);
     }
@@ -314,6 +326,7 @@ public class SearchActivity extends Activity implements
         if (mSearchView != null) {
             Utils.setUpSearchView(mSearchView, this);
             mSearchView.setQuery(mQuery, false);
+            mSearchView.setOnQueryTextListener(this);
             mSearchView.clearFocus();
 
             int searchSrcTextId = mSearchView.getContext().getResources().getIdentifier("android:id/search_src_text", null, null);
@@ -416,6 +429,9 @@ public class SearchActivity extends Activity implements
                 mTimeChangesUpdater);
         mContentResolver.registerContentObserver(Events.CONTENT_URI, true,
                 mObserver);
+        if (mNeedRequestPermissions == 0) {
+            EventSearchIndex.getInstance(this).resume();
+        }
         // We call this in case the user changed the time zone
         eventsChanged();
     }
@@ -426,6 +442,9 @@ public class SearchActivity extends Activity implements
         Utils.resetMidnightUpdater(mHandler, mTimeChangesUpdater);
         Utils.clearTimeChangesReceiver(this, mTimeChangesReceiver);
         mContentResolver.unregisterContentObserver(mObserver);
+        if (mNeedRequestPermissions == 0) {
+            EventSearchIndex.getInstance(this).pause();
+        }
     }
 
     @Override
@@ -452,14 +471,22 @@ public class SearchActivity extends Activity implements
 
     @Override
     public boolean onQueryTextChange(String newText) {
+        // Only when the local index answers, the provider search is too slow
+        // to run for every keystroke
+        if (TextUtils.getTrimmedLength(newText) > 0 && !newText.equals(mQuery)
+                && EventSearchIndex.getInstance(this).isReady()) {
+            mQuery = newText;
+            mHandler.removeCallbacks(mSearchAsYouType);
+            mHandler.postDelayed(mSearchAsYouType, SEARCH_AS_YOU_TYPE_DELAY);
+        }
         return false;
     }
 
     @Override
     public boolean onQueryTextSubmit(String query) {
-        mQuery = query;
-        mController.sendEvent(this, EventType.SEARCH, null, null, -1,
-                ViewType.CURRENT, 0, query, getComponentName());
+        // The search intent SearchView sends runs the search and saves it in
+        // the recent queries
+        mHandler.removeCallbacks(mSearchAsYouType);
         return false;
     }
 
@@ -35,6 +35,7 @@ import com.android.calendar.Utils;
 import com.android.calendar.agenda.AgendaWindowAdapter.DayAdapterInfo;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -49,6 +50,8 @@ public class AgendaByDayAdapter extends BaseAdapter {
     private final AgendaAdapter mAgendaAdapter;
     private final LayoutInflater mInflater;
     private ArrayList<RowInfo> mRowInfo;
+    // Positions of the day headers in mRowInfo, in increasing order
+    private int[] mHeaderPositions;
     private int mTodayJulianDay;
     private Time mTmpTime;
     private String mTimeZone;
@@ -104,12 +107,12 @@ public class AgendaByDayAdapter extends BaseAdapter {
             return -1;
         }
 
-        for (int i = position; i >= 0; i--) {
-            RowInfo row = mRowInfo.get(i);
-            if (row != null && row.mType == TYPE_DAY)
-                return i;
+        int index = Arrays.binarySearch(mHeaderPositions, position);
+        if (index < 0) {
+            // The header before the insertion point
+            index = -index - 2;
         }
-        return -1;
+        return index >= 0 ? mHeaderPositions[index] : -1;
     }
 
     // Returns the number of items in a section defined by a specific header
@@ -118,14 +121,11 @@ public class AgendaByDayAdapter extends BaseAdapter {
         if (mRowInfo == null) {
             return -1;
         }
-        int count = 0;
-        for (int i = position + 1; i < mRowInfo.size(); i++) {
-            if (mRowInfo.get(i).mType != TYPE_MEETING) {
-                return count;
-            }
-            count++;
-        }
-        return count;
+        int index = Arrays.binarySearch(mHeaderPositions, position);
+        index = index >= 0 ? index + 1 : -index - 1;
+        int nextHeader = index < mHeaderPositions.length
+                ? mHeaderPositions[index] : mRowInfo.size();
+        return Math.max(0, nextHeader - position - 1);
     }
 
     @Override
@@ -314,22 +314,69 @@ public class AgendaByDayAdapter extends BaseAdapter {
 
     public void clearDayHeaderInfo() {
         mRowInfo = null;
+        mHeaderPositions = null;
     }
 
-    public void changeCursor(DayAdapterInfo info) {
-        calculateDays(info);
+    /**
+     * @param rows the rows of info.cursor from {@link #buildDayRows}, or null
+     *        to build them here
+     */
+    public void changeCursor(DayAdapterInfo info, DayRows rows) {
+        if (rows == null) {
+            rows = buildDayRows(info.cursor, info.start, info.end, mTimeZone);
+        }
+        mRowInfo = rows.mRows;
+        mHeaderPositions = rows.mHeaderPositions;
+        mTodayJulianDay = rows.mTodayJulianDay;
         mAgendaAdapter.changeCursor(info.cursor);
     }
 
-    public void calculateDays(DayAdapterInfo dayAdapterInfo) {
-        Cursor cursor = dayAdapterInfo.cursor;
+    /**
+     * The day headers and events a cursor of agenda instances is shown as,
+     * see {@link #buildDayRows}.
+     */
+    static final class DayRows {
+        private final ArrayList<RowInfo> mRows;
+        private final int[] mHeaderPositions;
+        private final int mTodayJulianDay;
+
+        private DayRows(ArrayList<RowInfo> rows, int todayJulianDay) {
+            mRows = rows;
+            mTodayJulianDay = todayJulianDay;
+            int headers = 0;
+            for (int i = 0, size = rows.size(); i < size; i++) {
+                if (rows.get(i).mType == TYPE_DAY) {
+                    headers++;
+                }
+            }
+            mHeaderPositions = new int[headers];
+            headers = 0;
+            for (int i = 0, size = rows.size(); i < size; i++) {
+                if (rows.get(i).mType == TYPE_DAY) {
+                    mHeaderPositions[headers++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the instances of the cursor, read from its current position,
+     * into rows of day headers and events, repeating multiple-day events
+     * under each day. Uses no adapter state, so it can run off the main
+     * thread.
+     *
+     * @param startDayOfCursor first Julian day the cursor covers
+     * @param endDayOfCursor last Julian day the cursor covers
+     */
+    static DayRows buildDayRows(Cursor cursor, int startDayOfCursor, int endDayOfCursor,
+            String timeZone) {
         ArrayList<RowInfo> rowInfo = new ArrayList<RowInfo>();
         int prevStartDay = -1;
 
-        Time tempTime = new Time(mTimeZone);
+        Time tempTime = new Time(timeZone);
         long now = System.currentTimeMillis();
         tempTime.set(now);
-        mTodayJulianDay = Time.getJulianDay(now, tempTime.gmtoff);
+        int todayJulianDay = Time.getJulianDay(now, tempTime.gmtoff);
 
         LinkedList<MultipleDayInfo> multipleDayList = new LinkedList<MultipleDayInfo>();
         for (int position = 0; cursor.moveToNext(); position++) {
@@ -342,12 +389,12 @@ public class AgendaByDayAdapter extends BaseAdapter {
             boolean allDay = cursor.getInt(AgendaWindowAdapter.INDEX_ALL_DAY) != 0;
             if (allDay) {
                 startTime = Utils.convertAlldayUtcToLocal(tempTime, startTime,
-                        mTimeZone);
+                        timeZone);
                 endTime = Utils.convertAlldayUtcToLocal(tempTime, endTime,
-                        mTimeZone);
+                        timeZone);
             }
             // Skip over the days outside of the adapter's range
-            startDay = Math.max(startDay, dayAdapterInfo.start);
+            startDay = Math.max(startDay, startDayOfCursor);
             // Make sure event's start time is not before the start of the day
             // (setJulianDay sets the time to 12:00am)
             long adapterStartTime = tempTime.setJulianDay(startDay);
@@ -382,7 +429,7 @@ public class AgendaByDayAdapter extends BaseAdapter {
                                 dayHeaderAdded = true;
                             }
                             long nextMidnight = Utils.getNextMidnight(tempTime,
-                                    info.mEventStartTimeMilli, mTimeZone);
+                                    info.mEventStartTimeMilli, timeZone);
 
                             long infoEndTime = (info.mEndDay == currentDay) ? info.mEventEndTimeMilli
                                     : nextMidnight;
@@ -409,10 +456,10 @@ public class AgendaByDayAdapter extends BaseAdapter {
             int endDay = cursor.getInt(AgendaWindowAdapter.INDEX_END_DAY);
 
             // Skip over the days outside of the adapter's range
-            endDay = Math.min(endDay, dayAdapterInfo.end);
+            endDay = Math.min(endDay, endDayOfCursor);
             if (endDay > startDay) {
                 long nextMidnight = Utils.getNextMidnight(tempTime, startTime,
-                        mTimeZone);
+                        timeZone);
                 multipleDayList.add(new MultipleDayInfo(position, endDay, id,
                         nextMidnight, endTime, instanceId, allDay));
                 // Add in the event for this cursor position - since it is the
@@ -430,7 +477,7 @@ public class AgendaByDayAdapter extends BaseAdapter {
         // There are no more cursor events but we might still have multiple-day
         // events left. So create day headers and events for those.
         if (prevStartDay > 0) {
-            for (int currentDay = prevStartDay + 1; currentDay <= dayAdapterInfo.end; currentDay++) {
+            for (int currentDay = prevStartDay + 1; currentDay <= endDayOfCursor; currentDay++) {
                 boolean dayHeaderAdded = false;
                 Iterator<MultipleDayInfo> iter = multipleDayList.iterator();
                 while (iter.hasNext()) {
@@ -449,7 +496,7 @@ public class AgendaByDayAdapter extends BaseAdapter {
                         dayHeaderAdded = true;
                     }
                     long nextMidnight = Utils.getNextMidnight(tempTime,
-                            info.mEventStartTimeMilli, mTimeZone);
+                            info.mEventStartTimeMilli, timeZone);
                     long infoEndTime = (info.mEndDay == currentDay) ? info.mEventEndTimeMilli
                             : nextMidnight;
                     rowInfo.add(new RowInfo(TYPE_MEETING, currentDay,
@@ -461,7 +508,7 @@ public class AgendaByDayAdapter extends BaseAdapter {
                 }
             }
         }
-        mRowInfo = rowInfo;
+        return new DayRows(rowInfo, todayJulianDay);
     }
 
     private static class RowInfo {
@@ -657,17 +704,8 @@ public class AgendaByDayAdapter extends BaseAdapter {
             return 0;
         }
 
-        int len = mRowInfo.size();
-        if (position >= len)
-            return 0; // no row info at this position
-
-        for (int index = position; index >= 0; index--) {
-            RowInfo row = mRowInfo.get(index);
-            if (row.mType == TYPE_DAY) {
-                return row.mDay;
-            }
-        }
-        return 0;
+        int headerPosition = getHeaderPosition(position);
+        return headerPosition >= 0 ? mRowInfo.get(headerPosition).mDay : 0;
     }
 
     /**
@@ -445,6 +445,7 @@ public class AgendaFragment extends Fragment implements CalendarController.Event
         if (mAdapter != null) {
             mAdapter.setScrollState(scrollState);
         }
+        mAgendaListView.onListScrollStateChanged(scrollState);
     }
 
     // Gets the time of the first visible view. If it is a new time, send a message to update
@@ -452,6 +453,7 @@ public class AgendaFragment extends Fragment implements CalendarController.Event
     @Override
     public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
             int totalItemCount) {
+        mAgendaListView.onListScrolled(firstVisibleItem, visibleItemCount);
         int julianDay = mAgendaListView.getJulianDayFromPosition(firstVisibleItem
                 - mAgendaListView.getHeaderViewsCount());
         // On error - leave the old view
@@ -28,11 +28,13 @@ import com.android.calendar.agenda.AgendaWindowAdapter.AgendaItem;
 import android.content.Context;
 import android.graphics.Rect;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.provider.CalendarContract.Attendees;
 import android.text.format.Time;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemClickListener;
 import android.widget.ListView;
@@ -52,6 +54,11 @@ public class AgendaListView extends ListView implements OnItemClickListener {
     private boolean mShowEventDetailsWithAgenda;
     private Handler mHandler = null;
 
+    // Scroll velocity in rows per second, positive towards newer events
+    private float mRowVelocity;
+    private int mLastFirstVisibleItem = INVALID_POSITION;
+    private long mLastScrollTime;
+
     private final Runnable mTZUpdater = new Runnable() {
         @Override
         public void run() {
@@ -366,9 +373,40 @@ public class AgendaListView extends ListView implements OnItemClickListener {
         mWindowAdapter.setSelectedInstanceId(id);
     }
 
+    /**
+     * Tracks how fast the rows move and lets the adapter prefetch ahead of
+     * them. Called from the OnScrollListener of the list.
+     */
+    public void onListScrolled(int firstVisibleItem, int visibleItemCount) {
+        long now = SystemClock.uptimeMillis();
+        if (mLastFirstVisibleItem != INVALID_POSITION && now > mLastScrollTime) {
+            float velocity = (firstVisibleItem - mLastFirstVisibleItem) * 1000f
+                    / (now - mLastScrollTime);
+            // onScroll comes every frame but rows only change every few, so smooth it out
+            mRowVelocity = (mRowVelocity + velocity) / 2;
+        }
+        mLastFirstVisibleItem = firstVisibleItem;
+        mLastScrollTime = now;
+        mWindowAdapter.onListScrolled(firstVisibleItem - getHeaderViewsCount(),
+                visibleItemCount, mRowVelocity);
+    }
+
+    public void onListScrollStateChanged(int scrollState) {
+        if (scrollState == OnScrollListener.SCROLL_STATE_IDLE) {
+            resetRowVelocity();
+        }
+    }
+
+    private void resetRowVelocity() {
+        mRowVelocity = 0;
+        mLastFirstVisibleItem = INVALID_POSITION;
+    }
+
     // Move the currently selected or visible focus down by offset amount.
     // offset could be negative.
     public void shiftSelection(int offset) {
+        // The rows moved without the list scrolling
+        resetRowVelocity();
         shiftPosition(offset);
         int position = getSelectedItemPosition();
         if (position != INVALID_POSITION) {
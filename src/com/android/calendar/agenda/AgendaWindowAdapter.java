@@ -25,6 +25,9 @@ import android.content.res.Resources;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
 import android.provider.CalendarContract;
 import android.provider.CalendarContract.Attendees;
 import android.provider.CalendarContract.Calendars;
@@ -44,6 +47,7 @@ import android.widget.TextView;
 import com.android.calendar.CalendarController;
 import com.android.calendar.CalendarController.EventType;
 import com.android.calendar.CalendarController.ViewType;
+import com.android.calendar.EventSearchIndex;
 import com.android.calendar.R;
 import com.android.calendar.StickyHeaderListView;
 import com.android.calendar.Utils;
@@ -123,6 +127,27 @@ public class AgendaWindowAdapter extends BaseAdapter
             Instances.EVENT_TIMEZONE, // 16
     };
 
+    // How CursorSnapshot keeps each column of PROJECTION
+    private static final int[] PROJECTION_TYPES = new int[] {
+            CursorSnapshot.TYPE_LONG, // 0
+            CursorSnapshot.TYPE_STRING, // 1
+            CursorSnapshot.TYPE_STRING, // 2
+            CursorSnapshot.TYPE_INT, // 3
+            CursorSnapshot.TYPE_INT, // 4
+            CursorSnapshot.TYPE_INT, // 5
+            CursorSnapshot.TYPE_STRING, // 6
+            CursorSnapshot.TYPE_LONG, // 7
+            CursorSnapshot.TYPE_LONG, // 8
+            CursorSnapshot.TYPE_LONG, // 9
+            CursorSnapshot.TYPE_INT, // 10
+            CursorSnapshot.TYPE_INT, // 11
+            CursorSnapshot.TYPE_INT, // 12
+            CursorSnapshot.TYPE_STRING, // 13
+            CursorSnapshot.TYPE_STRING, // 14
+            CursorSnapshot.TYPE_INT, // 15
+            CursorSnapshot.TYPE_STRING, // 16
+    };
+
     static {
         if (!Utils.isJellybeanOrLater()) {
             PROJECTION[INDEX_COLOR] = Instances.CALENDAR_COLOR;
@@ -133,12 +158,28 @@ public class AgendaWindowAdapter extends BaseAdapter
     // position == positionInListView - OFF_BY_ONE_BUG
     // TODO Need to look into this.
     private static final int OFF_BY_ONE_BUG = 1;
-    private static final int MAX_NUM_OF_ADAPTERS = 5;
+    /** Bytes the rows of the adapters may take before the farthest ones are dropped */
+    private static final int MAX_CACHED_BYTES = 512 * 1024;
     private static final int IDEAL_NUM_OF_EVENTS = 50;
+    private static final int MAX_NUM_OF_EVENTS = 200;
     private static final int MIN_QUERY_DURATION = 7; // days
     private static final int MAX_QUERY_DURATION = 60; // days
+    private static final int MAX_WINDOW_DURATION = 366; // days
+    /** Query latency up to which a window is sized for IDEAL_NUM_OF_EVENTS, in ms */
+    private static final long IDEAL_QUERY_LATENCY = 250;
+    /** Weight the earlier queries keep in the events per day estimate */
+    private static final float DENSITY_DECAY = 0.75f;
     private static final int PREFETCH_BOUNDARY = 1;
 
+    /**
+     * While the list moves, the next window is queried once the end of the
+     * loaded rows is closer than the rows the list moves by in this many times
+     * the query latency, so the query returns before the list gets there.
+     */
+    private static final float PREFETCH_LATENCY_FACTOR = 2f;
+    /** Query latency assumed until one has been measured, in ms */
+    private static final long INITIAL_QUERY_LATENCY = 250;
+
     /** Times to auto-expand/retry query after getting no data */
     private static final int RETRIES_ON_NO_DATA = 1;
 
@@ -189,6 +230,17 @@ public class AgendaWindowAdapter extends BaseAdapter
     /** Number of "newer" query that has been processed. */
     private int mNewerRequestsProcessed;
 
+    /** Smoothed time from starting a query to getting its cursor, in ms */
+    private long mQueryLatency = INITIAL_QUERY_LATENCY;
+
+    /**
+     * Decayed sums of the events the queries returned and of the days they
+     * covered. Their ratio estimates how many events a day of the calendars
+     * shown has.
+     */
+    private float mDensityEvents;
+    private float mDensityDays;
+
     // Note: Formatter is not thread safe. Fine for now as it is only used by the main thread.
     private final Formatter mFormatter;
     private final StringBuilder mStringBuilder;
@@ -235,6 +287,10 @@ public class AgendaWindowAdapter extends BaseAdapter
 
     private static class QuerySpec {
         long queryStartMillis;
+        long startUptime;
+        String timeZone;
+        // Built with the result on the query thread
+        AgendaByDayAdapter.DayRows dayRows;
         Time goToTime;
         int start;
         int end;
@@ -307,7 +363,7 @@ public class AgendaWindowAdapter extends BaseAdapter
     }
 
     static class DayAdapterInfo {
-        Cursor cursor;
+        CursorSnapshot cursor;
         AgendaByDayAdapter dayAdapter;
         int start; // start day of the cursor's coverage
         int end; // end day of the cursor's coverage
@@ -449,18 +505,12 @@ public class AgendaWindowAdapter extends BaseAdapter
 
     // Abstract Method in BaseAdapter
     public View getView(int position, View convertView, ViewGroup parent) {
-        if (position >= (mRowCount - PREFETCH_BOUNDARY)
-                && mNewerRequests <= mNewerRequestsProcessed) {
-            if (DEBUGLOG) Log.e(TAG, "queryForNewerEvents: ");
-            mNewerRequests++;
-            queueQuery(new QuerySpec(QUERY_TYPE_NEWER));
+        if (position >= (mRowCount - PREFETCH_BOUNDARY)) {
+            queryForNewerEvents();
         }
 
-        if (position < PREFETCH_BOUNDARY
-                && mOlderRequests <= mOlderRequestsProcessed) {
-            if (DEBUGLOG) Log.e(TAG, "queryForOlderEvents: ");
-            mOlderRequests++;
-            queueQuery(new QuerySpec(QUERY_TYPE_OLDER));
+        if (position < PREFETCH_BOUNDARY) {
+            queryForOlderEvents();
         }
 
         final View v;
@@ -685,6 +735,10 @@ public class AgendaWindowAdapter extends BaseAdapter
     public void refresh(Time goToTime, long id, String searchQuery, boolean forced,
             boolean refreshEventInfo) {
         if (searchQuery != null) {
+            if (!searchQuery.equals(mSearchQuery)) {
+                // Search results are much sparser than the whole agenda
+                resetEventDensity();
+            }
             mSearchQuery = searchQuery;
         }
 
@@ -736,8 +790,7 @@ public class AgendaWindowAdapter extends BaseAdapter
 
         // If AllInOneActivity is sending a second GOTO event(in OnResume), ignore it.
         if (!mCleanQueryInitiated || searchQuery != null) {
-            // Query for a total of MIN_QUERY_DURATION days
-            int endDay = startDay + MIN_QUERY_DURATION;
+            int endDay = startDay + calculateQueryDuration();
 
             mSelectedInstanceId = -1;
             mCleanQueryInitiated = true;
@@ -753,30 +806,81 @@ public class AgendaWindowAdapter extends BaseAdapter
         }
     }
 
+    /**
+     * Called as the list scrolls, to query the next window ahead of the rows
+     * the list is moving towards.
+     *
+     * @param firstVisiblePosition adapter position of the first visible row
+     * @param visibleCount number of visible rows
+     * @param rowsPerSecond how fast the list moves, positive towards newer
+     *        events
+     */
+    public void onListScrolled(int firstVisiblePosition, int visibleCount,
+            float rowsPerSecond) {
+        if (mShuttingDown || mAdapterInfos.isEmpty() || rowsPerSecond == 0) {
+            return;
+        }
+        int leadRows = PREFETCH_BOUNDARY + (int) (Math.abs(rowsPerSecond)
+                * mQueryLatency * PREFETCH_LATENCY_FACTOR / DateUtils.SECOND_IN_MILLIS);
+        if (rowsPerSecond > 0) {
+            if (mRowCount - (firstVisiblePosition + visibleCount) <= leadRows) {
+                queryForNewerEvents();
+            }
+        } else if (firstVisiblePosition <= leadRows) {
+            queryForOlderEvents();
+        }
+    }
+
+    // At most one request per direction is queued or running at a time
+    private void queryForNewerEvents() {
+        if (mNewerRequests <= mNewerRequestsProcessed) {
+            if (DEBUGLOG) Log.e(TAG, "queryForNewerEvents: ");
+            mNewerRequests++;
+            queueQuery(new QuerySpec(QUERY_TYPE_NEWER));
+        }
+    }
+
+    private void queryForOlderEvents() {
+        if (mOlderRequests <= mOlderRequestsProcessed) {
+            if (DEBUGLOG) Log.e(TAG, "queryForOlderEvents: ");
+            mOlderRequests++;
+            queueQuery(new QuerySpec(QUERY_TYPE_OLDER));
+        }
+    }
+
     public void close() {
         mShuttingDown = true;
-        pruneAdapterInfo(QUERY_TYPE_CLEAN);
+        pruneAdapterInfo(QUERY_TYPE_CLEAN, 0);
         if (mQueryHandler != null) {
             mQueryHandler.cancelOperation(0);
         }
     }
 
-    private DayAdapterInfo pruneAdapterInfo(int queryType) {
+    /**
+     * @param newBytes size of the rows about to be added
+     */
+    private DayAdapterInfo pruneAdapterInfo(int queryType, int newBytes) {
         synchronized (mAdapterInfos) {
             DayAdapterInfo recycleMe = null;
             if (!mAdapterInfos.isEmpty()) {
-                if (mAdapterInfos.size() >= MAX_NUM_OF_ADAPTERS) {
-                    if (queryType == QUERY_TYPE_NEWER) {
-                        recycleMe = mAdapterInfos.removeFirst();
-                    } else if (queryType == QUERY_TYPE_OLDER) {
-                        recycleMe = mAdapterInfos.removeLast();
-                        // Keep the size only if the oldest items are removed.
-                        recycleMe.size = 0;
+                if (queryType == QUERY_TYPE_NEWER || queryType == QUERY_TYPE_OLDER) {
+                    // Drop the adapters at the other end until the new rows fit,
+                    // but keep the one next to them
+                    int cachedBytes = newBytes;
+                    for (DayAdapterInfo info : mAdapterInfos) {
+                        cachedBytes += info.cursor.getByteSize();
+                    }
+                    int deletedRows = 0;
+                    while (cachedBytes > MAX_CACHED_BYTES && mAdapterInfos.size() > 1) {
+                        recycleMe = queryType == QUERY_TYPE_NEWER
+                                ? mAdapterInfos.removeFirst() : mAdapterInfos.removeLast();
+                        cachedBytes -= recycleMe.cursor.getByteSize();
+                        recycleMe.cursor.close();
+                        deletedRows += recycleMe.size;
                     }
                     if (recycleMe != null) {
-                        if (recycleMe.cursor != null) {
-                            recycleMe.cursor.close();
-                        }
+                        // Keep the size only if the oldest items are removed.
+                        recycleMe.size = queryType == QUERY_TYPE_NEWER ? deletedRows : 0;
                         return recycleMe;
                     }
                 }
@@ -788,7 +892,6 @@ public class AgendaWindowAdapter extends BaseAdapter
                     do {
                         info = mAdapterInfos.poll();
                         if (info != null) {
-                            // TODO the following causes ANR's. Do this in a thread.
                             info.cursor.close();
                             deletedRows += info.size;
                             recycleMe = info;
@@ -839,19 +942,33 @@ public class AgendaWindowAdapter extends BaseAdapter
         }
     }
 
-    private int calculateQueryDuration(int start, int end) {
-        int queryDuration = MAX_QUERY_DURATION;
-        if (mRowCount != 0) {
-            queryDuration = IDEAL_NUM_OF_EVENTS * (end - start + 1) / mRowCount;
+    /**
+     * @return the number of days a query should cover to return about
+     *         IDEAL_NUM_OF_EVENTS events, more when queries are slow
+     */
+    private int calculateQueryDuration() {
+        if (mDensityDays == 0) {
+            return MIN_QUERY_DURATION;
+        }
+        long targetEvents = Math.min(MAX_NUM_OF_EVENTS, IDEAL_NUM_OF_EVENTS
+                * Math.max(mQueryLatency, IDEAL_QUERY_LATENCY) / IDEAL_QUERY_LATENCY);
+        float eventsPerDay = mDensityEvents / mDensityDays;
+        if (eventsPerDay * MAX_WINDOW_DURATION <= targetEvents) {
+            return MAX_WINDOW_DURATION;
         }
+        return Math.max(MIN_QUERY_DURATION, (int) (targetEvents / eventsPerDay));
+    }
 
-        if (queryDuration > MAX_QUERY_DURATION) {
-            queryDuration = MAX_QUERY_DURATION;
-        } else if (queryDuration < MIN_QUERY_DURATION) {
-            queryDuration = MIN_QUERY_DURATION;
+    private void updateEventDensity(int events, int days) {
+        if (days > 0) {
+            mDensityEvents = mDensityEvents * DENSITY_DECAY + events;
+            mDensityDays = mDensityDays * DENSITY_DECAY + days;
         }
+    }
 
-        return queryDuration;
+    private void resetEventDensity() {
+        mDensityEvents = 0;
+        mDensityDays = 0;
     }
 
     private boolean queueQuery(int start, int end, Time goToTime,
@@ -884,7 +1001,7 @@ public class AgendaWindowAdapter extends BaseAdapter
         if (!mAdapterInfos.isEmpty()) {
             int start = mAdapterInfos.getFirst().start;
             int end = mAdapterInfos.getLast().end;
-            int queryDuration = calculateQueryDuration(start, end);
+            int queryDuration = calculateQueryDuration();
             switch(queryData.queryType) {
                 case QUERY_TYPE_OLDER:
                     queryData.end = start - 1;
@@ -903,27 +1020,6 @@ public class AgendaWindowAdapter extends BaseAdapter
                 queryData.end = Utils.MAX_DATE_JULIAN_DAY;
             }
             /* @} */
-
-            // By "compacting" cursors, this fixes the disco/ping-pong problem
-            // b/5311977
-            if (mRowCount < 20 && queryData.queryType != QUERY_TYPE_CLEAN) {
-                if (DEBUGLOG) {
-                    Log.e(TAG, "Compacting cursor: mRowCount=" + mRowCount
-                            + " totalStart:" + start
-                            + " totalEnd:" + end
-                            + " query.start:" + queryData.start
-                            + " query.end:" + queryData.end);
-                }
-
-                queryData.queryType = QUERY_TYPE_CLEAN;
-
-                if (queryData.start > start) {
-                    queryData.start = start;
-                }
-                if (queryData.end < end) {
-                    queryData.end = end;
-                }
-            }
         }
 
         if (BASICLOG) {
@@ -935,7 +1031,11 @@ public class AgendaWindowAdapter extends BaseAdapter
                     + time2.toString() + " then go to " + queryData.goToTime);
         }
 
-        mQueryHandler.cancelOperation(0);
+        // Queries run one at a time from the head of mQueryQueue, so there is
+        // no earlier operation left to cancel here.
+        queryData.startUptime = SystemClock.uptimeMillis();
+        queryData.timeZone = mTimeZone;
+        queryData.dayRows = null;
         if (BASICLOG) queryData.queryStartMillis = System.nanoTime();
 
         Uri queryUri = buildQueryUri(
@@ -970,6 +1070,75 @@ public class AgendaWindowAdapter extends BaseAdapter
             super(cr);
         }
 
+        @Override
+        protected Handler createHandler(Looper looper) {
+            return new IndexingWorkerHandler(looper);
+        }
+
+        /**
+         * Runs the queries, then copies each result into a CursorSnapshot and
+         * builds its day rows on the same thread, before onQueryComplete gets
+         * them on the main thread.
+         */
+        private class IndexingWorkerHandler extends WorkerHandler {
+            private final Handler mIndexer;
+
+            public IndexingWorkerHandler(Looper looper) {
+                super(looper);
+                mIndexer = new Handler(looper) {
+                    @Override
+                    public void handleMessage(Message msg) {
+                        WorkerArgs args = (WorkerArgs) msg.obj;
+                        if (args.result instanceof Cursor && args.cookie instanceof QuerySpec) {
+                            args.result = indexResult((QuerySpec) args.cookie,
+                                    (Cursor) args.result);
+                        }
+                        Message reply = Message.obtain(msg);
+                        reply.setTarget(QueryHandler.this);
+                        reply.sendToTarget();
+                    }
+                };
+            }
+
+            @Override
+            public void handleMessage(Message msg) {
+                WorkerArgs args = (WorkerArgs) msg.obj;
+                if (args.cookie instanceof QuerySpec) {
+                    useSearchIndex((QuerySpec) args.cookie, args);
+                }
+                // Have the result come back through mIndexer first
+                args.handler = mIndexer;
+                super.handleMessage(msg);
+            }
+        }
+
+        /**
+         * Turns a search into a query for the instances of the events the
+         * search index finds, if it can answer it.
+         */
+        private void useSearchIndex(QuerySpec data, WorkerArgs args) {
+            if (data.searchQuery == null) {
+                return;
+            }
+            String selection = EventSearchIndex.getInstance(mContext).buildInstancesSelection(
+                    data.searchQuery, data.start, data.end);
+            if (selection == null) {
+                return;
+            }
+            args.uri = buildQueryUri(data.start, data.end, null);
+            args.selection = "(" + args.selection + ") AND " + selection;
+        }
+
+        private CursorSnapshot indexResult(QuerySpec data, Cursor cursor) {
+            // Keep a compact copy of the rows and release the cursor window now
+            CursorSnapshot snapshot = new CursorSnapshot(cursor, PROJECTION_TYPES);
+            cursor.close();
+            data.dayRows = AgendaByDayAdapter.buildDayRows(snapshot, data.start, data.end,
+                    data.timeZone);
+            snapshot.moveToPosition(-1);
+            return snapshot;
+        }
+
         @Override
         protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
             if (DEBUGLOG) {
@@ -984,6 +1153,9 @@ public class AgendaWindowAdapter extends BaseAdapter
               return;
             }
 
+            mQueryLatency = (3 * mQueryLatency
+                    + SystemClock.uptimeMillis() - data.startUptime) / 4;
+
             if (BASICLOG) {
                 long queryEndMillis = System.nanoTime();
                 Log.e(TAG, "Query time(ms): "
@@ -1002,8 +1174,10 @@ public class AgendaWindowAdapter extends BaseAdapter
 
             // Notify Listview of changes and update position
             int cursorSize = cursor.getCount();
+            updateEventDensity(cursorSize, data.end - data.start + 1);
             if (cursorSize > 0 || mAdapterInfos.isEmpty() || data.queryType == QUERY_TYPE_CLEAN) {
-                final int listPositionOffset = processNewCursor(data, cursor);
+                final int listPositionOffset = processNewCursor(data,
+                        (CursorSnapshot) cursor);
                 int newPosition = -1;
                 if (data.goToTime == null) { // Typical Scrolling type query
                     notifyDataSetChanged();
@@ -1158,20 +1332,21 @@ public class AgendaWindowAdapter extends BaseAdapter
 
                     // Update query specification with expanded search range
                     // and maybe rerun query
+                    int expansion = Math.max(MAX_QUERY_DURATION, calculateQueryDuration());
                     switch (querySpec.queryType) {
                         case QUERY_TYPE_OLDER:
                             totalAgendaRangeStart = querySpec.start;
-                            querySpec.start -= MAX_QUERY_DURATION;
+                            querySpec.start -= expansion;
                             break;
                         case QUERY_TYPE_NEWER:
                             totalAgendaRangeEnd = querySpec.end;
-                            querySpec.end += MAX_QUERY_DURATION;
+                            querySpec.end += expansion;
                             break;
                         case QUERY_TYPE_CLEAN:
                             totalAgendaRangeStart = querySpec.start;
                             totalAgendaRangeEnd = querySpec.end;
-                            querySpec.start -= MAX_QUERY_DURATION / 2;
-                            querySpec.end += MAX_QUERY_DURATION / 2;
+                            querySpec.start -= expansion / 2;
+                            querySpec.end += expansion / 2;
                             break;
                     }
 
@@ -1246,10 +1421,10 @@ public class AgendaWindowAdapter extends BaseAdapter
          *
          * @return number of rows removed from the beginning
          */
-        private int processNewCursor(QuerySpec data, Cursor cursor) {
+        private int processNewCursor(QuerySpec data, CursorSnapshot cursor) {
             synchronized (mAdapterInfos) {
                 // Remove adapter info's from adapterInfos as needed
-                DayAdapterInfo info = pruneAdapterInfo(data.queryType);
+                DayAdapterInfo info = pruneAdapterInfo(data.queryType, cursor.getByteSize());
                 int listPositionOffset = 0;
                 if (info == null) {
                     info = new DayAdapterInfo(mContext);
@@ -1264,7 +1439,7 @@ public class AgendaWindowAdapter extends BaseAdapter
                 info.start = data.start;
                 info.end = data.end;
                 info.cursor = cursor;
-                info.dayAdapter.changeCursor(info);
+                info.dayAdapter.changeCursor(info, data.dayRows);
                 info.size = info.dayAdapter.getCount();
 
                 // Insert into adapterInfos
@@ -0,0 +1,181 @@
+package com.android.calendar.agenda;
+
+import android.database.AbstractCursor;
+import android.database.Cursor;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Read-only copy of the rows of a cursor, kept column by column in primitive
+ * arrays, with equal strings shared. Much smaller than the CursorWindow of the
+ * original, which can be closed as soon as the copy is made.
+ */
+final class CursorSnapshot extends AbstractCursor {
+
+    static final int TYPE_INT = 0;
+    static final int TYPE_LONG = 1;
+    static final int TYPE_STRING = 2;
+
+    // Rough sizes for getByteSize
+    private static final int ARRAY_OVERHEAD = 16;
+    private static final int STRING_OVERHEAD = 40;
+
+    private final String[] mColumnNames;
+    private final int[] mTypes;
+    // int[], long[] or String[] for each column, as given by mTypes
+    private final Object[] mColumns;
+    // The null rows of the number columns, null if a column has none
+    private final BitSet[] mNulls;
+    private final int mCount;
+    private final int mByteSize;
+
+    /**
+     * Copies all the rows of the cursor, which is left open.
+     *
+     * @param types how to store each column of the cursor, TYPE_INT,
+     *        TYPE_LONG or TYPE_STRING
+     */
+    CursorSnapshot(Cursor cursor, int[] types) {
+        mColumnNames = cursor.getColumnNames();
+        if (types.length != mColumnNames.length) {
+            throw new IllegalArgumentException("Expected " + mColumnNames.length
+                    + " column types, got " + types.length);
+        }
+        mTypes = types;
+        mCount = cursor.getCount();
+        mColumns = new Object[types.length];
+        mNulls = new BitSet[types.length];
+
+        long byteSize = 0;
+        for (int column = 0; column < types.length; column++) {
+            switch (types[column]) {
+                case TYPE_INT:
+                    mColumns[column] = new int[mCount];
+                    byteSize += 4L * mCount;
+                    break;
+                case TYPE_LONG:
+                    mColumns[column] = new long[mCount];
+                    byteSize += 8L * mCount;
+                    break;
+                default:
+                    mColumns[column] = new String[mCount];
+                    byteSize += 4L * mCount;
+                    break;
+            }
+            byteSize += ARRAY_OVERHEAD;
+        }
+
+        HashMap<String, String> strings = new HashMap<String, String>();
+        cursor.moveToPosition(-1);
+        for (int row = 0; row < mCount && cursor.moveToNext(); row++) {
+            for (int column = 0; column < types.length; column++) {
+                if (types[column] == TYPE_STRING) {
+                    String value = cursor.getString(column);
+                    if (value != null) {
+                        String shared = strings.get(value);
+                        if (shared == null) {
+                            strings.put(value, value);
+                            byteSize += STRING_OVERHEAD + 2L * value.length();
+                            shared = value;
+                        }
+                        ((String[]) mColumns[column])[row] = shared;
+                    }
+                } else if (cursor.isNull(column)) {
+                    if (mNulls[column] == null) {
+                        mNulls[column] = new BitSet(mCount);
+                    }
+                    mNulls[column].set(row);
+                } else if (types[column] == TYPE_INT) {
+                    ((int[]) mColumns[column])[row] = cursor.getInt(column);
+                } else {
+                    ((long[]) mColumns[column])[row] = cursor.getLong(column);
+                }
+            }
+        }
+        mByteSize = (int) Math.min(byteSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the approximate number of bytes the copied rows take
+     */
+    int getByteSize() {
+        return mByteSize;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    @Override
+    public int getType(int column) {
+        if (isNull(column)) {
+            return FIELD_TYPE_NULL;
+        }
+        return mTypes[column] == TYPE_STRING ? FIELD_TYPE_STRING : FIELD_TYPE_INTEGER;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        checkPosition();
+        if (mTypes[column] == TYPE_STRING) {
+            return ((String[]) mColumns[column])[mPos] == null;
+        }
+        return mNulls[column] != null && mNulls[column].get(mPos);
+    }
+
+    @Override
+    public String getString(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        switch (mTypes[column]) {
+            case TYPE_INT:
+                return Integer.toString(((int[]) mColumns[column])[mPos]);
+            case TYPE_LONG:
+                return Long.toString(((long[]) mColumns[column])[mPos]);
+            default:
+                return ((String[]) mColumns[column])[mPos];
+        }
+    }
+
+    @Override
+    public long getLong(int column) {
+        checkPosition();
+        switch (mTypes[column]) {
+            case TYPE_INT:
+                return ((int[]) mColumns[column])[mPos];
+            case TYPE_LONG:
+                return ((long[]) mColumns[column])[mPos];
+            default:
+                String value = ((String[]) mColumns[column])[mPos];
+                return value == null ? 0 : Long.parseLong(value);
+        }
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.android.calendar.month;
 
+import com.android.calendar.DrawAllocationAudit;
 import com.android.calendar.Event;
 import com.android.calendar.R;
 import com.android.calendar.Utils;
@@ -605,6 +606,7 @@ public class MonthWeekEventsView extends SimpleWeekView {
 
     @Override
     protected void onDraw(Canvas canvas) {
+        int allocations = DrawAllocationAudit.begin();
         drawBackground(canvas);
         drawWeekNums(canvas);
         drawDaySeparators(canvas);
@@ -627,6 +629,7 @@ public class MonthWeekEventsView extends SimpleWeekView {
             drawDNA(canvas);
         }
         drawClick(canvas);
+        DrawAllocationAudit.end("MonthWeekEventsView", allocations);
     }
 
     protected void drawToday(Canvas canvas) {
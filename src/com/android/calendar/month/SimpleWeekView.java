@@ -173,6 +173,7 @@ public class SimpleWeekView extends View {
     protected String[] mLunarDayNumbers;
     protected boolean[] mLunarDayNumbersIsFest;
     private LunarCalendar mLunarCalendar;
+    private int[] mLunarDates;
     /* @} */
     /* SPRD: Add for bug467636, add foreign festival info. @{ */
     private ForeignFestivalCalendar mForeignFestivalCalendar;
@@ -269,6 +270,7 @@ public class SimpleWeekView extends View {
         if (Utils.mLunarFlag || Utils.mSupportForeignFestivalCalendar) {
             mLunarDayNumbers = new String[mNumCells];
             mLunarDayNumbersIsFest= new boolean[mNumCells];
+            mLunarDates = new int[mNumCells];
         }
         /* @} */
         // Allocate space for caching the day numbers and focus values
@@ -322,6 +324,11 @@ public class SimpleWeekView extends View {
                 VIEW_PARAMS_FOCUS_MONTH)
                 : DEFAULT_FOCUS_MONTH;
 
+        if (Utils.mLunarFlag && !Utils.mSupportForeignFestivalCalendar) {
+            LunarCalendarConvertUtil.getPackedLunarDates(time.year, time.month,
+                    time.monthDay, mLunarDates, mNumCells - i);
+        }
+        final int firstDayCell = i;
         for (; i < mNumCells; i++) {
             if (time.monthDay == 1) {
                 mFirstMonth = time.month;
@@ -347,8 +354,8 @@ public class SimpleWeekView extends View {
                 mLunarDayNumbersIsFest[i] = mForeignFestivalCalendar.isFastival;
             } else if (Utils.mLunarFlag) {
                 int monthDay = time.monthDay;
-                LunarCalendarConvertUtil.parseLunarCalendar(time.year,
-                        time.month, monthDay, mLunarCalendar);
+                LunarCalendarConvertUtil.setLunarCalendar(mLunarDates[i - firstDayCell],
+                        time.year, time.month, monthDay, mLunarCalendar);
                 mLunarDayNumbers[i] = mLunarCalendar.getLunarDayInfo();
                 mLunarDayNumbersIsFest[i] = mLunarCalendar.mIsFastival;
             }
@@ -0,0 +1,114 @@
+package com.sprd.calendar.foreigncalendar;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Foreign festival labels and dates, read from a pack written by
+ * tools/festivalpack/FestivalPackConverter. The layout must stay in sync with
+ * the converter:
+ *
+ * <pre>
+ * int   MAGIC, short VERSION
+ * short language count, UTF language code of each label column
+ * short festival count, then per language one UTF label per festival
+ * int   first year, short year count
+ * short festival line (1-based, 0 for none) of each day, 31 slots per month
+ * </pre>
+ */
+final class FestivalPack {
+
+    private static final String TAG = "FestivalPack";
+    private static final int MAGIC = 0x46455354;
+    private static final int VERSION = 1;
+    private static final int DAYS_PER_YEAR = 12 * 31;
+
+    private final String[] mLanguages;
+    private final String[][] mLabels;
+    private final int mFirstYear;
+    private final short[] mLines;
+
+    private FestivalPack(String[] languages, String[][] labels, int firstYear,
+            short[] lines) {
+        mLanguages = languages;
+        mLabels = labels;
+        mFirstYear = firstYear;
+        mLines = lines;
+    }
+
+    /**
+     * @return the pack, or null if the asset is missing or malformed
+     */
+    static FestivalPack load(AssetManager assets, String name) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                assets.open(name)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                Log.w(TAG, name + " is not a festival pack");
+                return null;
+            }
+            String[] languages = new String[in.readShort()];
+            for (int i = 0; i < languages.length; i++) {
+                languages[i] = in.readUTF();
+            }
+            int festivalCount = in.readShort();
+            String[][] labels = new String[languages.length][festivalCount];
+            for (String[] languageLabels : labels) {
+                for (int i = 0; i < festivalCount; i++) {
+                    languageLabels[i] = in.readUTF();
+                }
+            }
+            int firstYear = in.readInt();
+            short[] lines = new short[in.readShort() * DAYS_PER_YEAR];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = in.readShort();
+            }
+            return new FestivalPack(languages, labels, firstYear, lines);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to load " + name, e);
+            return null;
+        }
+    }
+
+    /**
+     * Festivals of different countries are in different columns, the last
+     * column matching the language or the country wins.
+     */
+    int getLanguageIndex(Locale locale) {
+        String language = locale.getLanguage();
+        String country = locale.getCountry().toLowerCase();
+        int index = 0;
+        for (int i = 0; i < mLanguages.length; i++) {
+            if (language.equals(mLanguages[i]) || country.equals(mLanguages[i])) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    String[] getLabels(int languageIndex) {
+        if (languageIndex >= mLabels.length) {
+            return new String[0];
+        }
+        return mLabels[languageIndex];
+    }
+
+    /**
+     * @param month (0-11)
+     * @return the 1-based festival line of the given day, or 0 if none
+     */
+    int getFestivalLine(int year, int month, int day) {
+        if (month < 0 || month > 11 || day < 1 || day > 31) {
+            return 0;
+        }
+        int index = (year - mFirstYear) * DAYS_PER_YEAR + month * 31 + day - 1;
+        if (index < 0 || index >= mLines.length) {
+            return 0;
+        }
+        return mLines[index];
+    }
+}
@@ -8,6 +8,7 @@ import java.util.Locale;
 import java.util.HashMap;
 import java.util.Calendar;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import android.R.integer;
 import android.content.Context;
@@ -20,19 +21,13 @@ import android.annotation.SuppressLint;
 import com.android.calendar.R;
 import com.sprd.calendar.lunar.SolarTermUtil;
 
+/**
+ * Lunar date of one solar day and its labels. An instance is not meant to be
+ * shared between threads, but the language resources and lookup tables behind
+ * it are immutable snapshots, so each thread can use its own instance.
+ */
 public class LunarCalendar {
 
-    private static String[] mLunarCalendarNumber = null;
-
-    private static String[] mLunarCalendarTen = null;
-
-    private static String[] mYearOfBirth = null;
-
-    public static String[] mLunarTerm = null;//Modify for bug1391668
-
-    private static String mLunarLeapTag = null, mLunarMonthTag = null,
-            zhengyueTag = null;
-
     Context mContext;
 
     public int mLunarYear = 0;
@@ -51,245 +46,210 @@ public class LunarCalendar {
 
     public boolean mIsFastival = false;
 
-    // special solar term dates
-    private static String[] mSpecialSolarTermDates;
-    // update lunar language resources info
-    private static boolean mHasInitialedRes;
-    // such as Mid-Autumn Day
-    private static String[] mTraditionalFestivalStr;
-    // such as Valentine's Day
-    private static String[] mFestivalStr;
-    // such as Jia, Yi, Bing, Ding
-    private static String[] mYearStemStr;
-    // such as Zi, Chou, Yin, Mao
-    private static String[] mYearBranchStr;
-
-    static {
-        mHasInitialedRes = false;
+    /*
+     * Slots of LanguageResources.mDayInfoLabels: days with a festival or solar
+     * term first, then first days of (leap) months, then the other lunar days.
+     */
+    private static final int TRADITIONAL_FESTIVAL_SLOTS = 10;
+    private static final int FESTIVAL_SLOTS = 14;
+    private static final int SOLAR_TERM_SLOTS = 25;
+    private static final int MONTH_LABEL_BASE = TRADITIONAL_FESTIVAL_SLOTS
+            * FESTIVAL_SLOTS * SOLAR_TERM_SLOTS;
+    private static final int DAY_LABEL_BASE = MONTH_LABEL_BASE + 24;
+    private static final int DAY_INFO_LABEL_SLOTS = DAY_LABEL_BASE + 31;
+
+    // null until the resources are loaded for the first time
+    private static volatile LanguageResources sResources;
+
+    /**
+     * Localized strings of one language. Never modified after construction,
+     * a language change publishes a new instance.
+     */
+    private static final class LanguageResources {
+        final String mLocale = Locale.getDefault().toString();
+        final String[] mLunarCalendarNumber;
+        final String[] mLunarCalendarTen;
+        final String[] mYearOfBirth;
+        final String[] mLunarTerm;
+        final String mLunarLeapTag;
+        final String mLunarMonthTag;
+        final String zhengyueTag;
+        // such as Mid-Autumn Day
+        final String[] mTraditionalFestivalStr;
+        // such as Valentine's Day
+        final String[] mFestivalStr;
+        // such as Jia, Yi, Bing, Ding
+        final String[] mYearStemStr;
+        // such as Zi, Chou, Yin, Mao
+        final String[] mYearBranchStr;
+        // day labels already built for this language, see getLunarDayInfo
+        final AtomicReferenceArray<String> mDayInfoLabels =
+                new AtomicReferenceArray<String>(DAY_INFO_LABEL_SLOTS);
+
+        LanguageResources(Context ctx) {
+            mLunarCalendarNumber = getStrings(ctx, R.string.chineseNumber1,
+                    R.string.chineseNumber2, R.string.chineseNumber3,
+                    R.string.chineseNumber4, R.string.chineseNumber5,
+                    R.string.chineseNumber6, R.string.chineseNumber7,
+                    R.string.chineseNumber8, R.string.chineseNumber9,
+                    R.string.chineseNumber10, R.string.chineseNumber11,
+                    R.string.chineseNumber12);
+            mLunarCalendarTen = getStrings(ctx, R.string.chineseTen0,
+                    R.string.chineseTen1, R.string.chineseTen2,
+                    R.string.chineseTen3, R.string.chineseTen4);
+            mYearOfBirth = getStrings(ctx, R.string.animals0, R.string.animals1,
+                    R.string.animals2, R.string.animals3, R.string.animals4,
+                    R.string.animals5, R.string.animals6, R.string.animals7,
+                    R.string.animals8, R.string.animals9, R.string.animals10,
+                    R.string.animals11);
+
+            mLunarLeapTag = getString(ctx, R.string.leap_month);
+            mLunarMonthTag = getString(ctx, R.string.month);
+            zhengyueTag = getString(ctx, R.string.zheng);
+
+            /* UNISOC: Modify for bug1391668 {@ */
+            mLunarTerm = getStrings(ctx, R.string.terms5, R.string.terms6,
+                    R.string.terms7, R.string.terms8, R.string.terms9,
+                    R.string.terms10, R.string.terms11, R.string.terms12,
+                    R.string.terms13, R.string.terms14, R.string.terms15,
+                    R.string.terms16, R.string.terms17, R.string.terms18,
+                    R.string.terms19, R.string.terms20, R.string.terms21,
+                    R.string.terms22, R.string.terms23, R.string.terms0,
+                    R.string.terms1, R.string.terms2, R.string.terms3,
+                    R.string.terms4);
+            /* }@ */
+
+            mTraditionalFestivalStr = getStrings(ctx, R.string.chunjie,
+                    R.string.yuanxiao, R.string.duanwu, R.string.qixi,
+                    R.string.zhongqiu, R.string.chongyang, R.string.laba,
+                    R.string.xiaonian, R.string.chuxi);
+
+            mFestivalStr = getStrings(ctx, R.string.new_Year_day,
+                    R.string.valentin_day, R.string.women_day,
+                    R.string.arbor_day, R.string.labol_day, R.string.youth_day,
+                    R.string.children_day, R.string.Communist_day,
+                    R.string.army_day, R.string.teacher_day,
+                    R.string.national_day, R.string.christmas_day,
+                    R.string.fool_day);
+
+            mYearStemStr = getStrings(ctx, R.string.jia, R.string.yi,
+                    R.string.bing, R.string.ding, R.string.wutian, R.string.ji,
+                    R.string.geng, R.string.xin, R.string.ren, R.string.gui);
+
+            mYearBranchStr = getStrings(ctx, R.string.zi, R.string.chou,
+                    R.string.yin, R.string.mao, R.string.chen, R.string.si,
+                    R.string.wudi, R.string.wei, R.string.shen, R.string.you,
+                    R.string.xu, R.string.hai);
+        }
     }
 
     public LunarCalendar(Context context) {
         mContext = context;
-        if (!mHasInitialedRes) {
+        if (sResources == null) {
             reloadLanguageResources(mContext); //UNISOC: Modify for bug1211080
-            mHasInitialedRes = true;
         }
     }
 
-    /* UNISOC: Modify for bug1391668 save 24 solarTerms {@ */
-    @SuppressLint("UseSparseArrays")
-    private static final Map<Integer, String[]> SOLAR_TERMS = new HashMap<>();
-    /* }@ */
-
+    /**
+     * Loads the strings of the current language. Instances in use on other
+     * threads keep using the previous strings until their next call.
+     */
     public static void reloadLanguageResources(Context ctx) {
-        if (mLunarCalendarNumber == null) {
-            mLunarCalendarNumber = new String[12];
-        }
-        mLunarCalendarNumber[0] = getString(ctx, R.string.chineseNumber1);
-        mLunarCalendarNumber[1] = getString(ctx, R.string.chineseNumber2);
-        mLunarCalendarNumber[2] = getString(ctx, R.string.chineseNumber3);
-        mLunarCalendarNumber[3] = getString(ctx, R.string.chineseNumber4);
-        mLunarCalendarNumber[4] = getString(ctx, R.string.chineseNumber5);
-        mLunarCalendarNumber[5] = getString(ctx, R.string.chineseNumber6);
-        mLunarCalendarNumber[6] = getString(ctx, R.string.chineseNumber7);
-        mLunarCalendarNumber[7] = getString(ctx, R.string.chineseNumber8);
-        mLunarCalendarNumber[8] = getString(ctx, R.string.chineseNumber9);
-        mLunarCalendarNumber[9] = getString(ctx, R.string.chineseNumber10);
-        mLunarCalendarNumber[10] = getString(ctx, R.string.chineseNumber11);
-        mLunarCalendarNumber[11] = getString(ctx, R.string.chineseNumber12);
-
-        if (mLunarCalendarTen == null) {
-            mLunarCalendarTen = new String[5];
-        }
-        mLunarCalendarTen[0] = getString(ctx, R.string.chineseTen0);
-        mLunarCalendarTen[1] = getString(ctx, R.string.chineseTen1);
-        mLunarCalendarTen[2] = getString(ctx, R.string.chineseTen2);
-        mLunarCalendarTen[3] = getString(ctx, R.string.chineseTen3);
-        mLunarCalendarTen[4] = getString(ctx, R.string.chineseTen4);
-
-        if (mYearOfBirth == null) {
-            mYearOfBirth = new String[12];
-        }
-        mYearOfBirth[0] = getString(ctx, R.string.animals0);
-        mYearOfBirth[1] = getString(ctx, R.string.animals1);
-        mYearOfBirth[2] = getString(ctx, R.string.animals2);
-        mYearOfBirth[3] = getString(ctx, R.string.animals3);
-        mYearOfBirth[4] = getString(ctx, R.string.animals4);
-        mYearOfBirth[5] = getString(ctx, R.string.animals5);
-        mYearOfBirth[6] = getString(ctx, R.string.animals6);
-        mYearOfBirth[7] = getString(ctx, R.string.animals7);
-        mYearOfBirth[8] = getString(ctx, R.string.animals8);
-        mYearOfBirth[9] = getString(ctx, R.string.animals9);
-        mYearOfBirth[10] = getString(ctx, R.string.animals10);
-        mYearOfBirth[11] = getString(ctx, R.string.animals11);
-
-        mLunarLeapTag = getString(ctx, R.string.leap_month);
-        mLunarMonthTag = getString(ctx, R.string.month);
-        zhengyueTag = getString(ctx, R.string.zheng);
-
-        if (mLunarTerm == null) {
-            mLunarTerm = new String[24];
-        }
-        /* UNISOC: Modify for bug1391668 {@ */
-        mLunarTerm[0] = getString(ctx, R.string.terms5);
-        mLunarTerm[1] = getString(ctx, R.string.terms6);
-        mLunarTerm[2] = getString(ctx, R.string.terms7);
-        mLunarTerm[3] = getString(ctx, R.string.terms8);
-        mLunarTerm[4] = getString(ctx, R.string.terms9);
-        mLunarTerm[5] = getString(ctx, R.string.terms10);
-        mLunarTerm[6] = getString(ctx, R.string.terms11);
-        mLunarTerm[7] = getString(ctx, R.string.terms12);
-        mLunarTerm[8] = getString(ctx, R.string.terms13);
-        mLunarTerm[9] = getString(ctx, R.string.terms14);
-        mLunarTerm[10] = getString(ctx, R.string.terms15);
-        mLunarTerm[11] = getString(ctx, R.string.terms16);
-        mLunarTerm[12] = getString(ctx, R.string.terms17);
-        mLunarTerm[13] = getString(ctx, R.string.terms18);
-        mLunarTerm[14] = getString(ctx, R.string.terms19);
-        mLunarTerm[15] = getString(ctx, R.string.terms20);
-        mLunarTerm[16] = getString(ctx, R.string.terms21);
-        mLunarTerm[17] = getString(ctx, R.string.terms22);
-        mLunarTerm[18] = getString(ctx, R.string.terms23);
-        mLunarTerm[19] = getString(ctx, R.string.terms0);
-        mLunarTerm[20] = getString(ctx, R.string.terms1);
-        mLunarTerm[21] = getString(ctx, R.string.terms2);
-        mLunarTerm[22] = getString(ctx, R.string.terms3);
-        mLunarTerm[23] = getString(ctx, R.string.terms4);
-        /* }@ */
-
-        if (mTraditionalFestivalStr == null) {
-            mTraditionalFestivalStr = new String[9];
-        }
-        mTraditionalFestivalStr[0] = getString(ctx, R.string.chunjie);
-        mTraditionalFestivalStr[1] = getString(ctx, R.string.yuanxiao);
-        mTraditionalFestivalStr[2] = getString(ctx, R.string.duanwu);
-        mTraditionalFestivalStr[3] = getString(ctx, R.string.qixi);
-        mTraditionalFestivalStr[4] = getString(ctx, R.string.zhongqiu);
-        mTraditionalFestivalStr[5] = getString(ctx, R.string.chongyang);
-        mTraditionalFestivalStr[6] = getString(ctx, R.string.laba);
-        mTraditionalFestivalStr[7] = getString(ctx, R.string.xiaonian);
-        mTraditionalFestivalStr[8] = getString(ctx, R.string.chuxi);
-
-        if (mFestivalStr == null) {
-            mFestivalStr = new String[13];
-        }
-        mFestivalStr[0] = getString(ctx, R.string.new_Year_day);
-        mFestivalStr[1] = getString(ctx, R.string.valentin_day);
-        mFestivalStr[2] = getString(ctx, R.string.women_day);
-        mFestivalStr[3] = getString(ctx, R.string.arbor_day);
-        mFestivalStr[4] = getString(ctx, R.string.labol_day);
-        mFestivalStr[5] = getString(ctx, R.string.youth_day);
-        mFestivalStr[6] = getString(ctx, R.string.children_day);
-        mFestivalStr[7] = getString(ctx, R.string.Communist_day);
-        mFestivalStr[8] = getString(ctx, R.string.army_day);
-        mFestivalStr[9] = getString(ctx, R.string.teacher_day);
-        mFestivalStr[10] = getString(ctx, R.string.national_day);
-        mFestivalStr[11] = getString(ctx, R.string.christmas_day);
-        mFestivalStr[12] = getString(ctx, R.string.fool_day);
-
-        if (mYearStemStr == null) {
-            mYearStemStr = new String[10];
-        }
-        mYearStemStr[0] = getString(ctx, R.string.jia);
-        mYearStemStr[1] = getString(ctx, R.string.yi);
-        mYearStemStr[2] = getString(ctx, R.string.bing);
-        mYearStemStr[3] = getString(ctx, R.string.ding);
-        mYearStemStr[4] = getString(ctx, R.string.wutian);
-        mYearStemStr[5] = getString(ctx, R.string.ji);
-        mYearStemStr[6] = getString(ctx, R.string.geng);
-        mYearStemStr[7] = getString(ctx, R.string.xin);
-        mYearStemStr[8] = getString(ctx, R.string.ren);
-        mYearStemStr[9] = getString(ctx, R.string.gui);
-
-        if (mYearBranchStr == null) {
-            mYearBranchStr = new String[12];
-        }
-        mYearBranchStr[0] = getString(ctx, R.string.zi);
-        mYearBranchStr[1] = getString(ctx, R.string.chou);
-        mYearBranchStr[2] = getString(ctx, R.string.yin);
-        mYearBranchStr[3] = getString(ctx, R.string.mao);
-        mYearBranchStr[4] = getString(ctx, R.string.chen);
-        mYearBranchStr[5] = getString(ctx, R.string.si);
-        mYearBranchStr[6] = getString(ctx, R.string.wudi);
-        mYearBranchStr[7] = getString(ctx, R.string.wei);
-        mYearBranchStr[8] = getString(ctx, R.string.shen);
-        mYearBranchStr[9] = getString(ctx, R.string.you);
-        mYearBranchStr[10] = getString(ctx, R.string.xu);
-        mYearBranchStr[11] = getString(ctx, R.string.hai);
+        sResources = new LanguageResources(ctx);
     }
 
     public static void clearLanguageResourcesRefs() {
-        mLunarCalendarNumber = null;
-        mLunarCalendarTen = null;
-        mYearOfBirth = null;
-        mLunarTerm = null;
-        mTraditionalFestivalStr = null;
-        mFestivalStr = null;
-        mYearStemStr = null;
-        mYearBranchStr = null;
-        mHasInitialedRes = false;
+        sResources = null;
+    }
+
+    private LanguageResources getResources() {
+        LanguageResources res = sResources;
+        if (res == null) {
+            // cleared while this instance was still in use
+            res = new LanguageResources(mContext);
+            sResources = res;
+        }
+        return res;
     }
 
     private static String getString(Context ctx, int resId) {
         return ctx.getString(resId);
     }
 
+    private static String[] getStrings(Context ctx, int... resIds) {
+        String[] strings = new String[resIds.length];
+        for (int i = 0; i < resIds.length; i++) {
+            strings[i] = getString(ctx, resIds[i]);
+        }
+        return strings;
+    }
+
     public String getTraditionalFestival() {
         return getTraditionalFestival(mLunarYear, mLunarMonth, mLunarDay);
     }
 
     public String getTraditionalFestival(int lunarYear, int lunarMonth,
             int lunarDay) {
-        // if is leap month, return empty string
+        int index = getTraditionalFestivalIndex(lunarYear, lunarMonth, lunarDay);
+        return index < 0 ? "" : getResources().mTraditionalFestivalStr[index];
+    }
+
+    /**
+     * @return index into mTraditionalFestivalStr, or -1 if there is no
+     *         traditional festival on the given lunar day
+     */
+    private int getTraditionalFestivalIndex(int lunarYear, int lunarMonth,
+            int lunarDay) {
+        // if is leap month, there is no festival
         if (mIsLeapMonth) {
-            return "";
+            return -1;
         }
 
-        String festivalStr = "";
+        int index = -1;
         // lunar optimization
         switch (lunarMonth) {
             case 1:
                 if (lunarDay == 1) {
-                    festivalStr = mTraditionalFestivalStr[0];
+                    index = 0;
                 } else if (lunarDay == 15) {
-                    festivalStr = mTraditionalFestivalStr[1];
+                    index = 1;
                 }
                 break;
             case 5:
                 if (lunarDay == 5) {
-                    festivalStr = mTraditionalFestivalStr[2];
+                    index = 2;
                 }
                 break;
             case 7:
                 if (lunarDay == 7) {
-                    festivalStr = mTraditionalFestivalStr[3];
+                    index = 3;
                 }
                 break;
             case 8:
                 if (lunarDay == 15) {
-                    festivalStr = mTraditionalFestivalStr[4];
+                    index = 4;
                 }
                 break;
             case 9:
                 if (lunarDay == 9) {
-                    festivalStr = mTraditionalFestivalStr[5];
+                    index = 5;
                 }
                 break;
             case 12:
                 if (lunarDay == 8) {
-                    festivalStr = mTraditionalFestivalStr[6];
+                    index = 6;
                 } else if (lunarDay == 23) {
-                    festivalStr = mTraditionalFestivalStr[7];
+                    index = 7;
                 } else if (lunarDay == LunarCalendarConvertUtil.getLunarMonthDays(
                         lunarYear, lunarMonth)) {
-                    festivalStr = mTraditionalFestivalStr[8];
+                    index = 8;
                 }
                 break;
             default:
                 break;
         }
 
-        return festivalStr;
+        return index;
     }
 
     public String getFestival() {
@@ -297,72 +257,81 @@ public class LunarCalendar {
     }
 
     private String getFestival(int solarMonth, int solarDay) {
-        String festivalStr = "";
+        int index = getFestivalIndex(solarMonth, solarDay);
+        return index < 0 ? "" : getResources().mFestivalStr[index];
+    }
+
+    /**
+     * @return index into mFestivalStr, or -1 if there is no festival on the
+     *         given solar day
+     */
+    private int getFestivalIndex(int solarMonth, int solarDay) {
+        int index = -1;
         // lunar optimization
         switch (solarMonth) {
             case 0:
                 if (solarDay == 1) {
-                    festivalStr = mFestivalStr[0];
+                    index = 0;
                 }
                 break;
             case 1:
                 if (solarDay == 14) {
-                    festivalStr = mFestivalStr[1];
+                    index = 1;
                 }
                 break;
             case 2:
                 if (solarDay == 8) {
-                    festivalStr = mFestivalStr[2];
+                    index = 2;
                 } else if (solarDay == 12) {
-                    festivalStr = mFestivalStr[3];
+                    index = 3;
                 }
                 break;
             case 3:
                 if (solarDay == 1) {
-                    festivalStr = mFestivalStr[12];
+                    index = 12;
                 }
                 break;
             case 4:
                 if (solarDay == 1) {
-                    festivalStr = mFestivalStr[4];
+                    index = 4;
                 } else if (solarDay == 4) {
-                    festivalStr = mFestivalStr[5];
+                    index = 5;
                 }
                 break;
             case 5:
                 if (solarDay == 1) {
-                    festivalStr = mFestivalStr[6];
+                    index = 6;
                 }
                 break;
             case 6:
                 if (solarDay == 1) {
-                    festivalStr = mFestivalStr[7];
+                    index = 7;
                 }
                 break;
             case 7:
                 if (solarDay == 1) {
-                    festivalStr = mFestivalStr[8];
+                    index = 8;
                 }
                 break;
             case 8:
                 if (solarDay == 10) {
-                    festivalStr = mFestivalStr[9];
+                    index = 9;
                 }
                 break;
             case 9:
                 if (solarDay == 1) {
-                    festivalStr = mFestivalStr[10];
+                    index = 10;
                 }
                 break;
             case 11:
                 if (solarDay == 25) {
-                    festivalStr = mFestivalStr[11];
+                    index = 11;
                 }
                 break;
             default:
                 break;
         }
-        return festivalStr;
+        return index;
     }
 
     /* UNISOC: Modify for bug1391668 {@ */
@@ -375,28 +344,20 @@ public class LunarCalendar {
      * @return
      */
     private String getSolarTerm(int year, int month, int day) {
-        SOLAR_TERMS.put(year, SolarTermUtil.getSolarTerms(year, mLunarTerm));
-        String[] solarTerm = SOLAR_TERMS.get(year);
-        String text = String.format("%s%s", year, (month >= 10 ? String.valueOf(month) : "0" + month) + (day >= 10 ? day : "0" + day));
-        String termStr = "";
-        for (String solarTermName : solarTerm) {
-            if (solarTermName.contains(text)) {
-                termStr = solarTermName.replace(text, "");
-                break;
-            }
-        }
-        return termStr;
+        int term = SolarTermTable.getSolarTermIndex(year, month, day);
+        return term < 0 ? "" : getResources().mLunarTerm[term];
     }
     /* }@ */
 
     private String getChinaMonthString() {
-        return getChinaMonthString(mLunarMonth, mIsLeapMonth);
+        return getChinaMonthString(getResources(), mLunarMonth, mIsLeapMonth);
     }
 
-    private String getChinaMonthString(int lunarMonth, boolean isLeapMonth) {
-        String chinaMonth = (isLeapMonth ? mLunarLeapTag : "")
-                + ((lunarMonth == 1) ? zhengyueTag
-                        : mLunarCalendarNumber[lunarMonth - 1]) + mLunarMonthTag;
+    private static String getChinaMonthString(LanguageResources res,
+            int lunarMonth, boolean isLeapMonth) {
+        String chinaMonth = (isLeapMonth ? res.mLunarLeapTag : "")
+                + ((lunarMonth == 1) ? res.zhengyueTag
+                        : res.mLunarCalendarNumber[lunarMonth - 1]) + res.mLunarMonthTag;
         return chinaMonth;
     }
 
@@ -407,21 +368,28 @@ public class LunarCalendar {
 
     public String getChinaDayString(int lunarMonth, int lunarDay,
             boolean isLeapMonth, boolean notDisplayLunarMonthForFirstDay) {
+        return getChinaDayString(getResources(), lunarMonth, lunarDay,
+                isLeapMonth, notDisplayLunarMonthForFirstDay);
+    }
+
+    private static String getChinaDayString(LanguageResources res,
+            int lunarMonth, int lunarDay, boolean isLeapMonth,
+            boolean notDisplayLunarMonthForFirstDay) {
         if (lunarDay > 30) {
             return "";
         }
         if (lunarDay == 1 && notDisplayLunarMonthForFirstDay) {
-            return getChinaMonthString(lunarMonth, isLeapMonth);
+            return getChinaMonthString(res, lunarMonth, isLeapMonth);
         }
         if (lunarDay == 10) {
-            return mLunarCalendarTen[0] + mLunarCalendarTen[1];
+            return res.mLunarCalendarTen[0] + res.mLunarCalendarTen[1];
         }
         if (lunarDay == 20) {
-            return mLunarCalendarTen[4] + mLunarCalendarTen[1];
+            return res.mLunarCalendarTen[4] + res.mLunarCalendarTen[1];
         }
 
-        return mLunarCalendarTen[lunarDay / 10]
-                + mLunarCalendarNumber[(lunarDay + 9) % 10];
+        return res.mLunarCalendarTen[lunarDay / 10]
+                + res.mLunarCalendarNumber[(lunarDay + 9) % 10];
     }
 
     private String getChinaYearString() {
@@ -433,7 +401,8 @@ public class LunarCalendar {
     }
 
     private String getLunarYearString(int num) {
-        return (mYearStemStr[num % 10] + mYearBranchStr[num % 12]);
+        LanguageResources res = getResources();
+        return (res.mYearStemStr[num % 10] + res.mYearBranchStr[num % 12]);
     }
 
     public String getLunarYear(int year) {
@@ -442,7 +411,7 @@ public class LunarCalendar {
     }
 
     public String animalsYear(int year) {
-        return mYearOfBirth[(year - 4) % 12];
+        return getResources().mYearOfBirth[(year - 4) % 12];
     }
 
     public String[] getLunarCalendarInfo(boolean notDisplayLunarMonthForFirstDay) {
@@ -466,60 +435,82 @@ public class LunarCalendar {
         if (mLunarYear == 0 || mLunarMonth == 0 || mLunarDay == 0) {
             return "";
         }
-        // if this day is traditional festival, show as it
-        String traditionFestivalStr = getTraditionalFestival();
-        String festivalStr = getFestival();
+        LanguageResources res = getResources();
+        LunarYearCache yearCache = LunarYearCache.getCache();
+        if (yearCache != null && yearCache.mLocale.equals(res.mLocale)) {
+            int entry = yearCache.getEntry(mSolarYear, mSolarMonth, mSolarDay);
+            if (entry >= 0) {
+                mIsFastival = LunarYearCache.isFestival(entry);
+                return yearCache.getLabel(entry);
+            }
+        }
+        int traditionFestival = getTraditionalFestivalIndex(mLunarYear,
+                mLunarMonth, mLunarDay);
+        int festival = getFestivalIndex(mSolarMonth, mSolarDay);
         // correct the algorithm of getting solar terms
-        String solarTermStr = getSolarTerm(mSolarYear, mSolarMonth + 1, mSolarDay);// UNISOC: Modify for bug1391668
-        if (!traditionFestivalStr.trim().equals("")
-                || !festivalStr.trim().equals("")
-                || !solarTermStr.trim().equals("")) {
-            mIsFastival = true;
+        int solarTerm = SolarTermTable.getSolarTermIndex(mSolarYear,
+                mSolarMonth + 1, mSolarDay);// UNISOC: Modify for bug1391668
+        mIsFastival = traditionFestival >= 0 || festival >= 0 || solarTerm >= 0;
+
+        // The label only depends on these values, so it is built once per
+        // language and shared by every cell showing the same text.
+        int slot;
+        if (traditionFestival >= 0 || festival >= 0 || solarTerm >= 0) {
+            slot = ((traditionFestival + 1) * FESTIVAL_SLOTS + festival + 1)
+                    * SOLAR_TERM_SLOTS + solarTerm + 1;
+        } else if (mLunarDay == 1) {
+            slot = MONTH_LABEL_BASE + (mIsLeapMonth ? 12 : 0) + mLunarMonth - 1;
         } else {
-            mIsFastival = false;
+            slot = DAY_LABEL_BASE + mLunarDay;
+        }
+        String label = res.mDayInfoLabels.get(slot);
+        if (label == null) {
+            label = buildLunarDayInfo(res, traditionFestival, festival, solarTerm);
+            res.mDayInfoLabels.lazySet(slot, label);
         }
+        return label;
+    }
 
-        if (traditionFestivalStr != null && festivalStr != null
-                && !traditionFestivalStr.trim().equals("")
-                && !festivalStr.trim().equals("")) {
+    private String buildLunarDayInfo(LanguageResources res,
+            int traditionFestival, int festival, int solarTerm) {
+        String traditionFestivalStr = traditionFestival < 0 ? ""
+                : res.mTraditionalFestivalStr[traditionFestival];
+        String festivalStr = festival < 0 ? "" : res.mFestivalStr[festival];
+        String solarTermStr = solarTerm < 0 ? "" : res.mLunarTerm[solarTerm];
+
+        if (traditionFestival >= 0 && festival >= 0) {
             return traditionFestivalStr + "/" + festivalStr;
         }
 
-        if (traditionFestivalStr != null && solarTermStr != null
-                && !traditionFestivalStr.trim().equals("")
-                && !solarTermStr.trim().equals("")) {
+        if (traditionFestival >= 0 && solarTerm >= 0) {
             return traditionFestivalStr + "/" + solarTermStr;
         }
 
-        if (festivalStr != null && solarTermStr != null
-                && !festivalStr.trim().equals("")
-                && !solarTermStr.trim().equals("")) {
+        if (festival >= 0 && solarTerm >= 0) {
             return festivalStr + "/" + solarTermStr;
         }
 
-        if (traditionFestivalStr != null
-                && !traditionFestivalStr.trim().equals("")) {
+        // if this day is traditional festival, show as it
+        if (traditionFestival >= 0) {
             return traditionFestivalStr;
         }
 
         // if this day is festival, show as it
-        if (festivalStr != null && !festivalStr.trim().equals("")) {
+        if (festival >= 0) {
             return festivalStr;
         }
 
         // if this day is solar term, show as it
-        if (solarTermStr != null && !solarTermStr.trim().equals("")) {
+        if (solarTerm >= 0) {
             return solarTermStr;
         }
 
         // if this day is first day of lunar month, show lunar month number
-        String lunarMonthStr = getChinaMonthString();
         if (mLunarDay == 1) {
-            return lunarMonthStr;
+            return getChinaMonthString(res, mLunarMonth, mIsLeapMonth);
         }
 
         // otherwise, show lunar day number
-        String lunarDayStr = getChinaDayString(false);
-        return lunarDayStr;
+        return getChinaDayString(res, mLunarMonth, mLunarDay, mIsLeapMonth, false);
     }
 }
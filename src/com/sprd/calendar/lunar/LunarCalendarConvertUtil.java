@@ -1,6 +1,7 @@
 /** SPRD: Modify for bug473571, add lunar info */
 package com.sprd.calendar.lunar;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
@@ -64,22 +65,12 @@ public class LunarCalendarConvertUtil {
             355, 355, 384, 354, 384, 354, 354, 384, 354, 355 };
     private final static int mBaseYear = 1900;
     private final static int mStartYear = 1969;
-    private static int mBeginYear = 1969;
     private final static int mOutBoundYear = 2050;
-    private static long mBaseDayTime = 0;
+    private final static int mTableStartEpochDay = toEpochDay(mStartYear, 0, 1);
+    private static volatile int[] sLunarDateTable;
     private final static int mBigMonthDays = 30;
     private final static int mSmallMonthDays = 29;
 
-    static {
-        // use Calendar.getTime.getTime() to return milliseconds for we don't need timezone info
-        // 1900-1-31, it is the first day of Gengzi year in lunar
-        /* UNISOC: Modify for bug1391668  {@ */
-        Calendar tempDate  = Calendar.getInstance();
-        tempDate.set(1900, 0, 31);
-        mBaseDayTime = tempDate.getTime().getTime();
-        /* }@ */
-    }
-
     /*
      * correct the algorithm of getting solar terms
      */
@@ -138,71 +129,26 @@ public class LunarCalendarConvertUtil {
 
     public static void parseLunarCalendar(int year, int month, int day,
             LunarCalendar lunarCalendar) {
-        if (lunarCalendar == null) {
-            return;
-        }
-
-        int leapLunarMonth = 0;
-        Date presentDate = null;
-        boolean isLeapMonth = false;
-        presentDate = new Date(year - mBaseYear, month, day);
-        // we use Math.ceil() here because offsetDayNum some time be truncate
-        // this will cause we lost one day
-        int offsetDayNum = (int) Math
-                .ceil((presentDate.getTime() - mBaseDayTime) * 1.0 / 86400000L);
-
-        mBeginYear = year-1;
-        if(mBeginYear<1969){
-            mBeginYear = 1969;
-        }
-        offsetDayNum -= mAllLunarDays[mBeginYear-mStartYear];
-
-        int lunarYear = 0;
-        int lunarMonth = 0;
-        int lunarDay = 0;
+        setLunarCalendar(getPackedLunarDate(year, month, day), year, month, day,
+                lunarCalendar);
+    }
 
-        for (lunarYear = mBeginYear; lunarYear < mOutBoundYear; lunarYear++) {
-            int daysOfLunarYear = mLunarDays[lunarYear-mStartYear];
-            if (offsetDayNum < daysOfLunarYear) {
-                break;
-            }
-            offsetDayNum -= daysOfLunarYear;
-        }
-        if (offsetDayNum < 0 || lunarYear == mOutBoundYear) {
+    /**
+     * Same as {@link #parseLunarCalendar} for a lunar date already looked up
+     * with {@link #getPackedLunarDate} or {@link #getPackedLunarDates}.
+     *
+     * @param month solar month (0-11)
+     */
+    public static void setLunarCalendar(int lunarDate, int year, int month, int day,
+            LunarCalendar lunarCalendar) {
+        if (lunarCalendar == null || lunarDate == 0) {
             return;
         }
 
-        leapLunarMonth = getLeapMonth(lunarYear);
-
-        for (lunarMonth = 1; lunarMonth <= 12; lunarMonth++) {
-            int daysOfLunarMonth = 0;
-            if (isLeapMonth) {
-                daysOfLunarMonth = getLeapMonthDays(lunarYear);
-            } else {
-                daysOfLunarMonth = getLunarMonthDays(lunarYear, lunarMonth);
-            }
-
-            if (offsetDayNum < daysOfLunarMonth) {
-                break;
-            } else {
-                offsetDayNum -= daysOfLunarMonth;
-                if (lunarMonth == leapLunarMonth) {
-                    if (!isLeapMonth) {
-                        lunarMonth--;
-                        isLeapMonth = true;
-                    } else {
-                        isLeapMonth = false;
-                    }
-                }
-            }
-        }
-
-        lunarDay = offsetDayNum + 1;
-
-        lunarCalendar.mLunarYear = lunarYear;
-        lunarCalendar.mLunarMonth = lunarMonth;
-        lunarCalendar.mLunarDay = lunarDay;
-        lunarCalendar.mIsLeapMonth = isLeapMonth;
+        lunarCalendar.mLunarYear = getPackedLunarYear(lunarDate);
+        lunarCalendar.mLunarMonth = getPackedLunarMonth(lunarDate);
+        lunarCalendar.mLunarDay = getPackedLunarDay(lunarDate);
+        lunarCalendar.mIsLeapMonth = isPackedLeapMonth(lunarDate);
 
         lunarCalendar.mSolarYear = year;
         lunarCalendar.mSolarMonth = month;
@@ -216,33 +162,138 @@ public class LunarCalendarConvertUtil {
             return;
         }
 
-        Date presentDate = null;
-        presentDate = new Date(year - mBaseYear, month, day);
-        // we use Math.ceil() here because offsetDayNum some time be truncate
-        // this will cause we lost one day
-        int offsetDayNum = (int) Math
-                .ceil((presentDate.getTime() - mBaseDayTime) * 1.0 / 86400000L);
+        int lunarDate = getPackedLunarDate(year, month, day);
+        if (lunarDate == 0) {
+            return;
+        }
+
+        lunarCalendar.mLunarYear = getPackedLunarYear(lunarDate);
+    }
+
+    /**
+     * Returns the lunar date of a solar date packed into an int, see
+     * {@link #getPackedLunarYear}, {@link #getPackedLunarMonth},
+     * {@link #getPackedLunarDay} and {@link #isPackedLeapMonth}.
+     *
+     * @param month (0-11), out of range months and days are normalized
+     * @return the packed lunar date, or 0 if it is out of the supported range
+     */
+    public static int getPackedLunarDate(int year, int month, int day) {
+        int index = toEpochDay(year, month, day) - mTableStartEpochDay;
+        int[] table = getLunarDateTable();
+        if (index < 0 || index >= table.length) {
+            return 0;
+        }
+        return table[index];
+    }
 
-        mBeginYear = year - 1;
-        if (mBeginYear < 1969) {
-            mBeginYear = 1969;
+    /**
+     * Looks up the lunar dates of count consecutive solar days at once, e.g.
+     * a whole month grid. Consecutive solar days are consecutive entries of
+     * the table, so this is a single copy after the first lookup.
+     *
+     * @param month (0-11) of the first day, out of range months and days are normalized
+     * @param lunarDates receives the packed lunar dates, 0 for days out of the
+     *            supported range
+     */
+    public static void getPackedLunarDates(int year, int month, int day,
+            int[] lunarDates, int count) {
+        int[] table = getLunarDateTable();
+        int index = toEpochDay(year, month, day) - mTableStartEpochDay;
+        int first = Math.max(index, 0);
+        int last = Math.min(index + count, table.length);
+        if (first >= last) {
+            Arrays.fill(lunarDates, 0, count, 0);
+            return;
         }
-        offsetDayNum -= mAllLunarDays[mBeginYear - mStartYear];
+        Arrays.fill(lunarDates, 0, first - index, 0);
+        System.arraycopy(table, first, lunarDates, first - index, last - first);
+        Arrays.fill(lunarDates, last - index, count, 0);
+    }
+
+    public static int getPackedLunarYear(int lunarDate) {
+        return (lunarDate >>> 10) + mBaseYear;
+    }
+
+    public static int getPackedLunarMonth(int lunarDate) {
+        return (lunarDate >>> 5) & 0xf;
+    }
+
+    public static int getPackedLunarDay(int lunarDate) {
+        return lunarDate & 0x1f;
+    }
+
+    public static boolean isPackedLeapMonth(int lunarDate) {
+        return (lunarDate & 0x200) != 0;
+    }
 
-        int lunarYear = 0;
+    private static int packLunarDate(int lunarYear, int lunarMonth, int lunarDay,
+            boolean isLeapMonth) {
+        return ((lunarYear - mBaseYear) << 10) | (isLeapMonth ? 0x200 : 0)
+                | (lunarMonth << 5) | lunarDay;
+    }
 
-        for (lunarYear = mBeginYear; lunarYear < mOutBoundYear; lunarYear++) {
-            int daysOfLunarYear = mLunarDays[lunarYear - mStartYear];
-            if (offsetDayNum < daysOfLunarYear) {
-                break;
+    /**
+     * One packed lunar date per solar day from Jan 1st of mStartYear to the
+     * end of the last supported lunar year, built on first use (about 120 KB).
+     */
+    private static int[] getLunarDateTable() {
+        int[] table = sLunarDateTable;
+        if (table == null) {
+            synchronized (LunarCalendarConvertUtil.class) {
+                table = sLunarDateTable;
+                if (table == null) {
+                    table = buildLunarDateTable();
+                    sLunarDateTable = table;
+                }
             }
-            offsetDayNum -= daysOfLunarYear;
         }
-        if (offsetDayNum < 0 || lunarYear == mOutBoundYear) {
-            return;
+        return table;
+    }
+
+    private static int[] buildLunarDateTable() {
+        // 1900-1-31, it is the first day of Gengzi year in lunar
+        int firstLunarDay = toEpochDay(mBaseYear, 0, 31) + mAllLunarDays[0];
+        int endDay = firstLunarDay;
+        for (int lunarYear = mStartYear; lunarYear < mOutBoundYear; lunarYear++) {
+            endDay += mLunarDays[lunarYear - mStartYear];
         }
+        int[] table = new int[endDay - mTableStartEpochDay];
+        int index = firstLunarDay - mTableStartEpochDay;
+        for (int lunarYear = mStartYear; lunarYear < mOutBoundYear; lunarYear++) {
+            int leapLunarMonth = getLeapMonth(lunarYear);
+            for (int lunarMonth = 1; lunarMonth <= 12; lunarMonth++) {
+                int monthDays = getLunarMonthDays(lunarYear, lunarMonth);
+                for (int lunarDay = 1; lunarDay <= monthDays; lunarDay++) {
+                    table[index++] = packLunarDate(lunarYear, lunarMonth, lunarDay, false);
+                }
+                if (lunarMonth == leapLunarMonth) {
+                    monthDays = getLeapMonthDays(lunarYear);
+                    for (int lunarDay = 1; lunarDay <= monthDays; lunarDay++) {
+                        table[index++] = packLunarDate(lunarYear, lunarMonth, lunarDay, true);
+                    }
+                }
+            }
+        }
+        return table;
+    }
 
-        lunarCalendar.mLunarYear = lunarYear;
+    /**
+     * @param month (0-11), out of range months and days are normalized
+     * @return days since 1970-01-01 in the proleptic Gregorian calendar
+     */
+    static int toEpochDay(int year, int month, int day) {
+        year += Math.floorDiv(month, 12);
+        month = Math.floorMod(month, 12) + 1;
+        // Shift the year to start in March so the leap day is the last one
+        if (month <= 2) {
+            year--;
+        }
+        int era = Math.floorDiv(year, 400);
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
     }
 
     public static boolean isLunarSetting() {
@@ -0,0 +1,227 @@
+package com.sprd.calendar.lunar;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lunar day labels and festival flags of the current year and the years
+ * around it, kept in a file in the cache dir so a cold start does not have to
+ * build them again. The file is written once per locale and app version by
+ * {@link #warmUpAsync(Context)} and read through a memory map.
+ *
+ * File layout: header (magic, format version, resource version, locale,
+ * first year, year count), the distinct labels as length-prefixed UTF-8, then
+ * one short per day: the label index, with FESTIVAL_FLAG set on festival days.
+ */
+public final class LunarYearCache {
+
+    private static final String TAG = "LunarYearCache";
+    private static final int MAGIC = 0x4c554e52;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FESTIVAL_FLAG = 0x8000;
+    private static final int YEAR_COUNT = 3;
+
+    private static volatile LunarYearCache sCache;
+
+    final String mLocale;
+    private final int mFirstEpochDay;
+    private final String[] mLabels;
+    private final ByteBuffer mDays;
+    private final int mDayCount;
+
+    private LunarYearCache(String locale, int firstYear, String[] labels,
+            ByteBuffer days) {
+        mLocale = locale;
+        mFirstEpochDay = LunarCalendarConvertUtil.toEpochDay(firstYear, 0, 1);
+        mLabels = labels;
+        mDays = days;
+        mDayCount = days.remaining() / 2;
+    }
+
+    /**
+     * @return the cache published by the last warm up, or null
+     */
+    static LunarYearCache getCache() {
+        return sCache;
+    }
+
+    /**
+     * @param month (0-11)
+     * @return the entry of the given day, or -1 if it is not cached
+     */
+    int getEntry(int year, int month, int day) {
+        int index = LunarCalendarConvertUtil.toEpochDay(year, month, day) - mFirstEpochDay;
+        if (index < 0 || index >= mDayCount) {
+            return -1;
+        }
+        return mDays.getShort(index * 2) & 0xffff;
+    }
+
+    String getLabel(int entry) {
+        return mLabels[entry & ~FESTIVAL_FLAG];
+    }
+
+    static boolean isFestival(int entry) {
+        return (entry & FESTIVAL_FLAG) != 0;
+    }
+
+    /**
+     * Maps the cache file of the current locale in the background, writing
+     * it first if it is missing or was written by another app version.
+     */
+    public static void warmUpAsync(Context context) {
+        final Context appContext = context.getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                warmUp(appContext);
+            }
+        });
+    }
+
+    static synchronized void warmUp(Context context) {
+        String locale = Locale.getDefault().toString();
+        long resourceVersion = getResourceVersion(context);
+        int firstYear = Calendar.getInstance().get(Calendar.YEAR) - 1;
+        File file = new File(context.getCacheDir(), "lunar_" + locale + ".cache");
+
+        LunarYearCache cache = load(file, locale, resourceVersion, firstYear);
+        if (cache == null) {
+            try {
+                write(context, file, locale, resourceVersion, firstYear);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write " + file, e);
+                return;
+            }
+            cache = load(file, locale, resourceVersion, firstYear);
+        }
+        if (cache != null) {
+            sCache = cache;
+        }
+    }
+
+    private static long getResourceVersion(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(
+                    context.getPackageName(), 0);
+            return info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    private static LunarYearCache load(File file, String locale,
+            long resourceVersion, int firstYear) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getLong() != resourceVersion
+                    || !locale.equals(readString(buffer))
+                    || buffer.getInt() != firstYear
+                    || buffer.getInt() != YEAR_COUNT) {
+                return null;
+            }
+            String[] labels = new String[buffer.getInt()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = readString(buffer);
+            }
+            ByteBuffer days = buffer.slice();
+            if (days.remaining() != getDayCount(firstYear) * 2) {
+                return null;
+            }
+            return new LunarYearCache(locale, firstYear, labels, days);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Ignoring unreadable " + file, e);
+            return null;
+        }
+    }
+
+    private static void write(Context context, File file, String locale,
+            long resourceVersion, int firstYear) throws IOException {
+        LunarCalendar lunarCalendar = new LunarCalendar(context);
+        Map<String, Integer> labelIndex = new HashMap<String, Integer>();
+        List<String> labels = new ArrayList<String>();
+        short[] days = new short[getDayCount(firstYear)];
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(firstYear, Calendar.JANUARY, 1);
+        for (int i = 0; i < days.length; i++) {
+            LunarCalendarConvertUtil.parseLunarCalendar(calendar.get(Calendar.YEAR),
+                    calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH),
+                    lunarCalendar);
+            String label = lunarCalendar.getLunarDayInfo();
+            Integer index = labelIndex.get(label);
+            if (index == null) {
+                index = labels.size();
+                labelIndex.put(label, index);
+                labels.add(label);
+            }
+            days[i] = (short) (index | (lunarCalendar.mIsFastival ? FESTIVAL_FLAG : 0));
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(resourceVersion);
+            writeString(out, locale);
+            out.writeInt(firstYear);
+            out.writeInt(YEAR_COUNT);
+            out.writeInt(labels.size());
+            for (String label : labels) {
+                writeString(out, label);
+            }
+            for (short day : days) {
+                out.writeShort(day);
+            }
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp);
+        }
+    }
+
+    private static int getDayCount(int firstYear) {
+        return LunarCalendarConvertUtil.toEpochDay(firstYear + YEAR_COUNT, 0, 1)
+                - LunarCalendarConvertUtil.toEpochDay(firstYear, 0, 1);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
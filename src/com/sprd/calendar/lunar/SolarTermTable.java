@@ -0,0 +1,146 @@
+package com.sprd.calendar.lunar;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Solar term days by year. Years FIRST_YEAR..LAST_YEAR come from a table
+ * precomputed with SolarTermUtil, other years are computed with it once and
+ * kept in a small LRU.
+ */
+final class SolarTermTable {
+
+    static final int FIRST_YEAR = 1900;
+    static final int LAST_YEAR = 2100;
+
+    /**
+     * One row per year, one hex digit per solar term in calendar order
+     * (xiaohan, dahan, lichun, ... dongzhi). Month m holds the terms
+     * 2 * (m - 1) and 2 * (m - 1) + 1, the first one falls on day d
+     * (d <= 15) and the second one on day d + 16.
+     */
+    private static final String[] TERM_DAYS = {
+            "644365546566778787988776", "654365556666878888988786", "655365656676888888988787", "655476657676889898988787", // 1900-1903
+            "755465546566778787988776", "654365556666878888988786", "655365656666888888988787", "655476657676889898988787", // 1904-1907
+            "755465546566778787988776", "654365556666878888988786", "655365656666888888988787", "655476657676889898988787", // 1908-1911
+            "755465546566778787988676", "644365556666878887988786", "654365556666888888988787", "655466656676888898988787", // 1912-1915
+            "655465546566778787888676", "644365556566878887988786", "654365556666888888988786", "655466656676888898988787", // 1916-1919
+            "655465546566778787888676", "644365546566878887988776", "654365556666888888988786", "655365656676888898988787", // 1920-1923
+            "655465546566778787888676", "644365546566878887988776", "654365556666878888988786", "655365656676888898988787", // 1924-1927
+            "655465546566778787877676", "644365546566778787988776", "654365556666878888988786", "655365656676888888988787", // 1928-1931
+            "655465546565778787877676", "644365546566778787988776", "654365556666878888988786", "655365656666888888988787", // 1932-1935
+            "655465546565778787877676", "644365546566778787988776", "654365556666878888988786", "655365656666888888988787", // 1936-1939
+            "655465546565778787877676", "644365546566778787988776", "654365556666878888988786", "655365656666888888988787", // 1940-1943
+            "655465545565778787877676", "644365546566778787888676", "644365556666878887988786", "654365556666888888988787", // 1944-1947
+            "655455545565777787877676", "544365546566778787888676", "644365546566878887988786", "654365556666888888988787", // 1948-1951
+            "655455545565777787877676", "544365546566778787888676", "644365546566878887988776", "654365556666878888988786", // 1952-1955
+            "655454545565777787877676", "544365546566778787888676", "644365546566778787988776", "654365556666878888988786", // 1956-1959
+            "655354545565777777877676", "544365546565778787877676", "644365546566778787988776", "654365556666878888988786", // 1960-1963
+            "655354545565777777877676", "544365546565778787877676", "644365546566778787988776", "654365556666878888988786", // 1964-1967
+            "655354545555777777877676", "544365546565778787877676", "644365546566778787988776", "654365556666878888988786", // 1968-1971
+            "655354545555777777877676", "544365545565778787877676", "644365546566778787988776", "654365556666878887988786", // 1972-1975
+            "655354445555777777877676", "544365545565777787877676", "644365546566778787888776", "654365556566878887988786", // 1976-1979
+            "655354445555777777877676", "544365545565777787877676", "644365546566778787888676", "644365546566878887988786", // 1980-1983
+            "654354445555767777877676", "544355545565777787877676", "544365546566778787888676", "644365546566778887988776", // 1984-1987
+            "654354445555767777877675", "544354545565777777877676", "544365546565778787888676", "644365546566778787988776", // 1988-1991
+            "654354445555767777877675", "544254545565777777877676", "544365546565778787877676", "644365546566778787988776", // 1992-1995
+            "654354445555767777877675", "544254545555777777877676", "544365546565778787877676", "644365546566778787988776", // 1996-1999
+            "654354445555767777877675", "544254545555777777877676", "544365546565778787877676", "644365546566778787988776", // 2000-2003
+            "654354445555767777877675", "544254545555777777877676", "544365545565777787877676", "644365546566778787988776", // 2004-2007
+            "654354445555767776877675", "544254445555777777877676", "544365545565777787877676", "644365546566778787888776", // 2008-2011
+            "654354445455767776877675", "544254445555767777877676", "544365545565777787877676", "644365546566778787888676", // 2012-2015
+            "644354435455767776877675", "543254445555767777877676", "544355545565777787877676", "544365546565778787888676", // 2016-2019
+            "644354435455667676877675", "543254445555767777877675", "544354545565777777877676", "544365546565778787888676", // 2020-2023
+            "644354435455667676877665", "543254445555767777877675", "544254545555777777877676", "544365546565778787877676", // 2024-2027
+            "644354435455667676877665", "543254445555767777877675", "544254545555777777877676", "544365546565778787877676", // 2028-2031
+            "644354435455667676877665", "543254445555767777877675", "544254545555777777877676", "544365545565777787877676", // 2032-2035
+            "644354435455667676877665", "543254445555767777877675", "544254545555777777877676", "544365545565777787877676", // 2036-2039
+            "644354435455667676877665", "543254445455767776877675", "544254445555777777877676", "544365545565777787877676", // 2040-2043
+            "644354435455667676777665", "543254435455767776877675", "544254445555767777877676", "544365545565777787877676", // 2044-2047
+            "644354435454667676777565", "533254435455667676877675", "543254445555767777877676", "544354545565777777877676", // 2048-2051
+            "544354435454667676777565", "533254435455667676877675", "543254445555767777877676", "544354545555777777877676", // 2052-2055
+            "544354435454667676777565", "533254435455667676877665", "543254445555767777877675", "544354545555777777877676", // 2056-2059
+            "544354435454667676766565", "533254435455667676877665", "543254445555767777877675", "544254545555777777877676", // 2060-2063
+            "544354435454667676766565", "533254435455667676877665", "543254445555767777877675", "544254545555777777877676", // 2064-2067
+            "544354434454666676766565", "533254435455667676877665", "543254445455767776877675", "544254545555777777877676", // 2068-2071
+            "544354434454666676766565", "533254435455667676777665", "543254445455767776877675", "544254445555767777877676", // 2072-2075
+            "544354434454666676766565", "533254435455667676777665", "543254435455667776877675", "544254445555767777877676", // 2076-2079
+            "544354434454666676766565", "533254435454667676777565", "543254435455667676877675", "543254445555767777877676", // 2080-2083
+            "544343434454666666766565", "433254435454667676777565", "533254435455667676877675", "543254445555767777877676", // 2084-2087
+            "544343434444666666766565", "433254435454667676777565", "533254435455667676877665", "543254445555767777877675", // 2088-2091
+            "544343434444666666766565", "433254435454667676766565", "533254435455667676877665", "543254445555767777877675", // 2092-2095
+            "544243434444666666766565", "433254435454666676766565", "533254435455667676877665", "543254445555767777877675", // 2096-2099
+            "544254545555777777877676" // 2100-2100
+    };
+
+    private static final int MAX_COMPUTED_YEARS = 8;
+
+    private static final Map<Integer, byte[]> sComputedYears =
+            new LinkedHashMap<Integer, byte[]>(MAX_COMPUTED_YEARS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                    return size() > MAX_COMPUTED_YEARS;
+                }
+            };
+
+    private SolarTermTable() {
+    }
+
+    /**
+     * @param month (1-12)
+     * @return the index into LunarCalendar.mLunarTerm of the solar term on
+     *         this day, or -1 if there is none
+     */
+    static int getSolarTermIndex(int year, int month, int day) {
+        if (month < 1 || month > 12) {
+            return -1;
+        }
+        int term = 2 * (month - 1);
+        if (day > 15) {
+            term++;
+        }
+        if (getTermDay(year, term) != day) {
+            return -1;
+        }
+        // mLunarTerm starts at the spring equinox, the fifth term of the year
+        return (term + 19) % 24;
+    }
+
+    /**
+     * @param term solar term in calendar order (0-23)
+     * @return day of month of the solar term
+     */
+    static int getTermDay(int year, int term) {
+        if (year >= FIRST_YEAR && year <= LAST_YEAR) {
+            int day = Character.digit(TERM_DAYS[year - FIRST_YEAR].charAt(term), 16);
+            return (term & 1) == 0 ? day : day + 16;
+        }
+        return getComputedYear(year)[term];
+    }
+
+    private static byte[] getComputedYear(int year) {
+        synchronized (sComputedYears) {
+            byte[] days = sComputedYears.get(year);
+            if (days == null) {
+                days = computeYear(year);
+                sComputedYears.put(year, days);
+            }
+            return days;
+        }
+    }
+
+    private static byte[] computeYear(int year) {
+        String[] names = new String[24];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "";
+        }
+        // Each entry is yyyyMMdd, entry p holds mLunarTerm[p < 3 ? p + 21 : p - 3]
+        String[] terms = SolarTermUtil.getSolarTerms(year, names);
+        byte[] days = new byte[24];
+        for (int p = 0; p < terms.length; p++) {
+            int term = ((p < 3 ? p + 21 : p - 3) + 5) % 24;
+            days[term] = (byte) Integer.parseInt(terms[p].substring(6, 8));
+        }
+        return days;
+    }
+}
@@ -385,18 +385,17 @@ public class SolarTermUtil {
     private static final double M1n[] = {3.81034392032, 8.39968473021E+03, -3.31919929753E-05, //Moon's eclipse coefficient
             3.20170955005E-08, -1.53637455544E-10};
 
-    private static double EnnT = 0;
-
     /**
-     * Calculate E10, E11, E20, etc., that is: calculate a certain group of period items or Poisson items, set EnnT time before calculation
+     * Calculate E10, E11, E20, etc., that is: calculate a certain group of period items or Poisson items
      *
      * @param F
+     * @param t Julian millennia from J2000
      * @return E10, E11, E20
      */
-    private static double Enn(double[] F) {
+    private static double Enn(double[] F, double t) {
         double v = 0;
         for (int i = 0; i < F.length; i += 3)
-            v += F[i] * Math.cos(F[i + 1] + EnnT * F[i + 2]);
+            v += F[i] * Math.cos(F[i + 1] + t * F[i + 2]);
         return v;
     }
 
@@ -407,29 +406,28 @@ public class SolarTermUtil {
      * @return the position of the earth, the coordinates of the ecliptic equinox of the heliocentric Date
      */
     private static double[] earCal(double jd) {
-        EnnT = jd / 365250;
         double llr[] = new double[3];
-        double t1 = EnnT, t2 = t1 * t1, t3 = t2 * t1, t4 = t3 * t1, t5 = t4
+        double t1 = jd / 365250, t2 = t1 * t1, t3 = t2 * t1, t4 = t3 * t1, t5 = t4
                 * t1;
-        llr[0] = Enn(E10) + Enn(E11) * t1 + Enn(E12) * t2 + Enn(E13) * t3
-                + Enn(E14) * t4 + Enn(E15) * t5;
-        llr[1] = Enn(E20) + Enn(E21) * t1;
-        llr[2] = Enn(E30) + Enn(E31) * t1 + Enn(E32) * t2 + Enn(E33) * t3;
+        llr[0] = Enn(E10, t1) + Enn(E11, t1) * t1 + Enn(E12, t1) * t2
+                + Enn(E13, t1) * t3 + Enn(E14, t1) * t4 + Enn(E15, t1) * t5;
+        llr[1] = Enn(E20, t1) + Enn(E21, t1) * t1;
+        llr[2] = Enn(E30, t1) + Enn(E31, t1) * t1 + Enn(E32, t1) * t2
+                + Enn(E33, t1) * t3;
         llr[0] = rad2mrad(llr[0]);
         return llr;
     }
 
     // =================Month position calculation====================
-    private static double MnnT = 0;
-
     /**
-     * Calculate M10, M11, M20, etc., set MnnT time before calculation
+     * Calculate M10, M11, M20, etc.
      *
      * @param F
+     * @param t Julian centuries from J2000
      * @return M10, M11, M20
      */
-    private static double Mnn(double[] F) {
-        double v = 0, t1 = MnnT, t2 = t1 * t1, t3 = t2 * t1, t4 = t3 * t1;
+    private static double Mnn(double[] F, double t) {
+        double v = 0, t1 = t, t2 = t1 * t1, t3 = t2 * t1, t4 = t3 * t1;
         for (int i = 0; i < F.length; i += 6)
             v += F[i]
                     * Math.sin(F[i + 1] + t1 * F[i + 2] + t2 * F[i + 3] + t3
@@ -444,12 +442,11 @@ public class SolarTermUtil {
      * @return geocentric ecliptic coordinates
      */
     private static double[] moonCoord(double julian) {
-        MnnT = julian / 36525;
-        double t1 = MnnT, t2 = t1 * t1, t3 = t2 * t1, t4 = t3 * t1;
+        double t1 = julian / 36525, t2 = t1 * t1, t3 = t2 * t1, t4 = t3 * t1;
         double[] llr = new double[3];
-        llr[0] = (Mnn(M10) + Mnn(M11) * t1 + Mnn(M12) * t2) / SECOND_PER_RAD;
-        llr[1] = (Mnn(M20) + Mnn(M21) * t1) / SECOND_PER_RAD;
-        llr[2] = (Mnn(M30) + Mnn(M31) * t1) * 0.999999949827;
+        llr[0] = (Mnn(M10, t1) + Mnn(M11, t1) * t1 + Mnn(M12, t1) * t2) / SECOND_PER_RAD;
+        llr[1] = (Mnn(M20, t1) + Mnn(M21, t1) * t1) / SECOND_PER_RAD;
+        llr[2] = (Mnn(M30, t1) + Mnn(M31, t1) * t1) * 0.999999949827;
         llr[0] = llr[0] + M1n[0] + M1n[1] * t1 + M1n[2] * t2 + M1n[3] * t3
                 + M1n[4] * t4;
         llr[0] = rad2mrad(llr[0]);
@@ -2,25 +2,22 @@ package com.sprd.calendar.newmonth;
 
 import android.content.Context;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.android.calendar.Utils;
+import com.sprd.calendar.newmonth.data.HolidayStore;
 import android.text.format.Time;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 public class CalendarUtils {
 
     private volatile static CalendarUtils sUtils;//UNISOC: Modify for bug1228196
-    private Map<String, int[]> sAllHolidays = new HashMap<>();
-    private Map<String, List<Integer>> sMonthTaskHint = new HashMap<>();
+    /* Task hint masks indexed by month, from Dec of YEAR_MIN - 1 to Jan of YEAR_MAX + 1
+     * so the cells of neighbouring months at both ends are covered too. */
+    private static final int TASK_HINT_YEAR_MIN = Utils.YEAR_MIN - 1;
+    private static final int TASK_HINT_MONTHS = (Utils.YEAR_MAX - Utils.YEAR_MIN + 3) * 12;
+    private final AtomicIntegerArray sMonthTaskHint = new AtomicIntegerArray(TASK_HINT_MONTHS);
+    private final AtomicInteger sTaskHintVersion = new AtomicInteger();
 
     public static CalendarUtils getInstance(Context context) {
         /* UNISOC: Modify for bug1228196 {@ */
@@ -35,123 +32,79 @@ public class CalendarUtils {
         return sUtils;
     }
 
-    public synchronized List<Integer> addTaskHints(int year, int month, List<Integer> days) {
-        String key = hashKey(year, month);
-        List<Integer> hints = sUtils.sMonthTaskHint.get(key);
-        if (hints == null) {
-            hints = new ArrayList<>();
-            hints.removeAll(days);
-            hints.addAll(days);
-            sUtils.sMonthTaskHint.put(key, hints);
-        } else {
-            hints.addAll(days);
-        }
-        return hints;
+    /**
+     * Task hints of a month are kept as a day mask, bit (day - 1) is set when
+     * that day has at least one event.
+     */
+    public static int taskHintBit(int day) {
+        return 1 << (day - 1);
     }
 
-    public synchronized List<Integer> removeTaskHints(int year, int month, List<Integer> days) {
-        String key = hashKey(year, month);
-        List<Integer> hints = sUtils.sMonthTaskHint.get(key);
-        if (hints == null) {
-            hints = new ArrayList<>();
-            sUtils.sMonthTaskHint.put(key, hints);
-        } else {
-            hints.removeAll(days);
-        }
-        return hints;
+    public static boolean hasTaskHint(int hints, int day) {
+        return (hints & taskHintBit(day)) != 0;
     }
 
-    public synchronized boolean addTaskHint(int year, int month, int day) {
-        String key = hashKey(year, month);
-        List<Integer> hints = sUtils.sMonthTaskHint.get(key);
-        if (hints == null) {
-            hints = new ArrayList<>();
-            hints.add(day);
-            sUtils.sMonthTaskHint.put(key, hints);
-            return true;
-        } else {
-            if (!hints.contains(day)) {
-                hints.add(day);
-                return true;
-            } else {
-                return false;
-            }
-        }
+    public int addTaskHints(int year, int month, int days) {
+        return updateTaskHints(year, month, days, ~0) | days;
     }
 
-    public synchronized boolean updateTaskHints(int year, int month, List<Integer> days) {
-        String key = hashKey(year, month);
-        List<Integer> hints = sUtils.sMonthTaskHint.get(key);
-        boolean needUpdate = false;
-        if (days != null && days.size() != 0) {
-            if (hints == null) {
-                hints = new ArrayList<>();
-                hints.addAll(days);
-                needUpdate = true;
-            } else {
-                if (hints.size() != days.size()) {
-                    hints.clear();
-                    hints.addAll(days);
-                    needUpdate = true;
-                } else {
-                    for (int i=0; i < hints.size(); i++){
-                        if(hints.get(i) != days.get(i)) {
-                            needUpdate = true;
-                            hints.clear();
-                            hints.addAll(days);
-                            break;
-                        }
-                   }
-                }
-            }
-        } else if (days != null && days.size() == 0) { // UNISOC: Modify for bug1206678
-            if (hints != null && hints.size() != 0) {
-                hints.clear();
-                needUpdate = true;
-            }
-        }
-        if (needUpdate) {
-            sUtils.sMonthTaskHint.put(key, hints);
-        }
-        return needUpdate;
+    public int removeTaskHints(int year, int month, int days) {
+        return updateTaskHints(year, month, 0, ~days) & ~days;
     }
 
-    public synchronized boolean removeTaskHint(int year, int month, int day) {
-        String key = hashKey(year, month);
-        List<Integer> hints = sUtils.sMonthTaskHint.get(key);
-        if (hints == null) {
-            hints = new ArrayList<>();
-            sUtils.sMonthTaskHint.put(key, hints);
-        } else {
-            if (hints.contains(day)) {
-                Iterator<Integer> i = hints.iterator();
-                while (i.hasNext()) {
-                    Integer next = i.next();
-                    if (next == day) {
-                        i.remove();
-                        break;
-                    }
-                }
-                return true;
-            } else {
-                return false;
-            }
-        }
-        return false;
+    public boolean addTaskHint(int year, int month, int day) {
+        return !hasTaskHint(updateTaskHints(year, month, taskHintBit(day), ~0), day);
     }
 
-    public synchronized List<Integer> getTaskHints(int year, int month) {
-        String key = hashKey(year, month);
-        List<Integer> hints = sUtils.sMonthTaskHint.get(key);
-        if (hints == null) {
-            hints = new ArrayList<>();
-            sUtils.sMonthTaskHint.put(key, hints);
+    public boolean updateTaskHints(int year, int month, int days) {
+        return updateTaskHints(year, month, days, 0) != days;
+    }
+
+    public boolean removeTaskHint(int year, int month, int day) {
+        return hasTaskHint(updateTaskHints(year, month, 0, ~taskHintBit(day)), day);
+    }
+
+    /**
+     * Lock free, safe to call from onDraw.
+     */
+    public int getTaskHints(int year, int month) {
+        int index = taskHintIndex(year, month);
+        return index < 0 ? 0 : sMonthTaskHint.get(index);
+    }
+
+    /**
+     * @return a counter bumped on every task hint change, views can compare it
+     *         with the value seen at their last draw to skip redundant redraws.
+     */
+    public int getTaskHintVersion() {
+        return sTaskHintVersion.get();
+    }
+
+    /**
+     * Atomically sets the mask of the month to (old & keep) | set.
+     *
+     * @return the old mask
+     */
+    private int updateTaskHints(int year, int month, int set, int keep) {
+        int index = taskHintIndex(year, month);
+        if (index < 0) {
+            // Out of range months are never stored, report them as unchanged
+            return set;
+        }
+        int oldHints, newHints;
+        do {
+            oldHints = sMonthTaskHint.get(index);
+            newHints = (oldHints & keep) | set;
+        } while (!sMonthTaskHint.compareAndSet(index, oldHints, newHints));
+        if (oldHints != newHints) {
+            sTaskHintVersion.incrementAndGet();
         }
-        return hints;
+        return oldHints;
     }
 
-    private static String hashKey(int year, int month) {
-        return String.format("%s:%s", year, month);
+    private static int taskHintIndex(int year, int month) {
+        int index = (year - TASK_HINT_YEAR_MIN) * 12 + month;
+        return index >= 0 && index < TASK_HINT_MONTHS ? index : -1;
     }
 
     /**
@@ -241,17 +194,30 @@ public class CalendarUtils {
     }
 
 
-    public synchronized int[] getHolidays(int year, int month) { //UNISOC: Modify for bug1228196
-        int holidays[];
-        if (sUtils.sAllHolidays != null) {
-            holidays = sUtils.sAllHolidays.get(year + "" + month);
-            if (holidays == null) {
-                holidays = new int[42];
+    /**
+     * Fills the 42 cells of the month grid with HolidayStore.REST_DAY,
+     * HolidayStore.WORK_DAY or 0, cell 0 being the first day of the week that
+     * contains the 1st.
+     *
+     * @param month (0-11)
+     */
+    public static void getHolidays(Context context, int year, int month, int[] holidays) {
+        int monthDays = getMonthDays(year, month);
+        int lastYear = month == 0 ? year - 1 : year;
+        int lastMonth = month == 0 ? 11 : month - 1;
+        int lastMonthDays = getMonthDays(lastYear, lastMonth);
+        int nextYear = month == 11 ? year + 1 : year;
+        int nextMonth = month == 11 ? 0 : month + 1;
+        int day = 2 - getFirstDayWeek(context, year, month, 1);
+        for (int i = 0; i < holidays.length; i++, day++) {
+            if (day < 1) {
+                holidays[i] = HolidayStore.getHoliday(lastYear, lastMonth, lastMonthDays + day);
+            } else if (day > monthDays) {
+                holidays[i] = HolidayStore.getHoliday(nextYear, nextMonth, day - monthDays);
+            } else {
+                holidays[i] = HolidayStore.getHoliday(year, month, day);
             }
-        } else {
-            holidays = new int[42];
         }
-        return holidays;
     }
 
     public static int getMonthRows(Context context, int year, int month) {
@@ -0,0 +1,208 @@
+package com.sprd.calendar.newmonth;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Bitmaps of settled month and week pages, replayed while the pager is being
+ * swiped so a page that has to be drawn again mid-swipe (newly attached or
+ * invalidated) costs one bitmap blit. Each entry remembers the state it was
+ * drawn with, a page whose state changed since is drawn live. Each pager
+ * keeps its current page and the one on either side; nothing is recorded if
+ * those do not all fit the byte budget. The bitmaps of pages that are
+ * dropped are drawn into again for the next ones, so a page that replayed a
+ * bitmap has to draw itself again before its pager records (see
+ * {@link #draw}). UI thread only.
+ */
+public final class PageRenderCache {
+
+    /**
+     * A page that can draw itself into the cache.
+     */
+    public interface Page {
+        /**
+         * Draws the page exactly as onDraw would, without side effects on
+         * the state it is keyed by.
+         */
+        void drawPage(Canvas canvas);
+    }
+
+    private static final int MONTH_PAGE = 1;
+    private static final int WEEK_PAGE = 2;
+
+    // The current page of a pager and the one on either side
+    private static final int PAGES_PER_PAGER = 3;
+    // A dropped page of each pager waiting to be reused
+    private static final int MAX_FREE_BITMAPS = 2;
+    private static final int BYTES_PER_PIXEL = 4; // ARGB_8888
+
+    private static PageRenderCache sInstance;
+
+    private final int mMaxBytes;
+    private final LruCache<Long, Entry> mMonthEntries;
+    private final LruCache<Long, Entry> mWeekEntries;
+    private final ArrayList<Bitmap> mFreeBitmaps = new ArrayList<Bitmap>();
+    // The size of the last page recorded of each kind
+    private int mMonthPageBytes, mWeekPageBytes;
+    private boolean mClearing;
+    private final Canvas mCanvas = new Canvas();
+
+    private static class Entry {
+        final Bitmap mBitmap;
+        final int[] mState;
+
+        Entry(Bitmap bitmap, int[] state) {
+            mBitmap = bitmap;
+            mState = state;
+        }
+    }
+
+    private class Entries extends LruCache<Long, Entry> {
+        Entries() {
+            super(PAGES_PER_PAGER);
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Long key, Entry oldEntry,
+                Entry newEntry) {
+            if (!mClearing) {
+                recycle(oldEntry.mBitmap);
+            }
+        }
+    }
+
+    private PageRenderCache(int maxBytes) {
+        mMaxBytes = maxBytes;
+        mMonthEntries = new Entries();
+        mWeekEntries = new Entries();
+    }
+
+    public static PageRenderCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new PageRenderCache(
+                    (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param month (0-11)
+     */
+    public static long monthKey(int year, int month) {
+        return ((long) MONTH_PAGE << 32) | (year * 12 + month);
+    }
+
+    /**
+     * @param julianDay the first day of the week
+     */
+    public static long weekKey(int julianDay) {
+        return ((long) WEEK_PAGE << 32) | julianDay;
+    }
+
+    private LruCache<Long, Entry> getEntries(long key) {
+        return (int) (key >>> 32) == MONTH_PAGE ? mMonthEntries : mWeekEntries;
+    }
+
+    /**
+     * Draws the cached bitmap of the page if it was recorded with the given
+     * state and size. The bitmap may be drawn into for another page once
+     * this one is dropped, so a page that was drawn this way must invalidate
+     * itself before its pager next records.
+     *
+     * @return whether the page was drawn
+     */
+    public boolean draw(Canvas canvas, long key, int[] state, int width, int height) {
+        Entry entry = getEntries(key).get(key);
+        if (entry == null || entry.mBitmap.getWidth() != width
+                || entry.mBitmap.getHeight() != height
+                || !Arrays.equals(entry.mState, state)) {
+            return false;
+        }
+        canvas.drawBitmap(entry.mBitmap, 0, 0, null);
+        return true;
+    }
+
+    /**
+     * Records the page with the given state unless it already is.
+     */
+    public void record(Page page, long key, int[] state, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        LruCache<Long, Entry> entries = getEntries(key);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.mBitmap.getWidth() == width
+                && entry.mBitmap.getHeight() == height
+                && Arrays.equals(entry.mState, state)) {
+            return;
+        }
+        int pageBytes = width * height * BYTES_PER_PIXEL;
+        if (entries == mMonthEntries) {
+            mMonthPageBytes = pageBytes;
+        } else {
+            mWeekPageBytes = pageBytes;
+        }
+        // With fewer pages than both pagers show, each swipe would only
+        // evict pages about to be replayed
+        if ((long) (PAGES_PER_PAGER + 1) * (mMonthPageBytes + mWeekPageBytes) > mMaxBytes) {
+            return;
+        }
+        Bitmap bitmap = obtainBitmap(width, height);
+        mCanvas.setBitmap(bitmap);
+        page.drawPage(mCanvas);
+        mCanvas.setBitmap(null);
+        entries.put(key, new Entry(bitmap, state.clone()));
+    }
+
+    /**
+     * @return a cleared bitmap of the given size, a dropped page's if one fits
+     */
+    private Bitmap obtainBitmap(int width, int height) {
+        for (int i = mFreeBitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mFreeBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                // Safe to draw into: the page that last replayed it has been
+                // invalidated by its recordPage before it was handed back out
+                mFreeBitmaps.remove(i);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    private void recycle(Bitmap bitmap) {
+        if (mFreeBitmaps.size() == MAX_FREE_BITMAPS) {
+            mFreeBitmaps.remove(0);
+        }
+        mFreeBitmaps.add(bitmap);
+    }
+
+    /**
+     * Drops every page, e.g. when the theme or the locale changed.
+     */
+    public void clear() {
+        mClearing = true;
+        try {
+            mMonthEntries.evictAll();
+            mWeekEntries.evictAll();
+        } finally {
+            mClearing = false;
+        }
+        mFreeBitmaps.clear();
+    }
+
+    /**
+     * Drops every page if the cache was ever used.
+     */
+    public static void clearIfCreated() {
+        if (sInstance != null) {
+            sInstance.clear();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.sprd.calendar.newmonth.data;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.calendar.Utils;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rest and work days, one byte per day. The data comes from holiday.json,
+ * which maps "yyyyM" to the 42 cells of that month laid out with Sunday as
+ * the first day of the week: 0 for a normal day, REST_DAY or WORK_DAY. It
+ * is parsed in the background, views drawn before that are told through
+ * OnHolidaysChangedListener.
+ */
+public class HolidayStore {
+
+    private static final String TAG = "HolidayStore";
+    private static final String HOLIDAY_FILE = "holiday.json";
+    private static final int DAYS_PER_YEAR = 12 * 31;
+    private static final int GRID_CELLS = 42;
+
+    public static final int REST_DAY = 1;
+    public static final int WORK_DAY = 2;
+
+    private static volatile Days sDays;
+    private static final AtomicInteger sVersion = new AtomicInteger();
+    // Only touched on the main thread
+    private static final ArrayList<OnHolidaysChangedListener> sListeners =
+            new ArrayList<OnHolidaysChangedListener>();
+
+    public interface OnHolidaysChangedListener {
+        /**
+         * Called on the main thread after the holidays have been loaded.
+         */
+        void onHolidaysChanged();
+    }
+
+    /**
+     * Days of the years from mFirstYear on, 31 slots per month.
+     */
+    private static class Days {
+        final int mFirstYear;
+        final byte[] mDays;
+
+        Days(int firstYear, byte[] days) {
+            mFirstYear = firstYear;
+            mDays = days;
+        }
+    }
+
+    /**
+     * @param month (0-11)
+     * @return REST_DAY, WORK_DAY or 0
+     */
+    public static int getHoliday(int year, int month, int day) {
+        Days days = sDays;
+        if (days == null || day < 1 || day > 31) {
+            return 0;
+        }
+        int index = (year - days.mFirstYear) * DAYS_PER_YEAR + month * 31 + day - 1;
+        if (index < 0 || index >= days.mDays.length) {
+            return 0;
+        }
+        return days.mDays[index];
+    }
+
+    /**
+     * @return whether rest/work days are shown for the given locale, the
+     *         bundled days are the mainland schedule so only for zh-CN
+     */
+    public static boolean isShownFor(Locale locale) {
+        return "zh".equals(locale.getLanguage()) && "CN".equalsIgnoreCase(locale.getCountry());
+    }
+
+    /**
+     * @return a counter bumped whenever a pack is swapped in, so views can
+     *         tell whether holidays they derived are stale
+     */
+    public static int getVersion() {
+        return sVersion.get();
+    }
+
+    /**
+     * Must be called on the main thread, e.g. when a view is attached.
+     */
+    public static void addListener(OnHolidaysChangedListener listener) {
+        sListeners.add(listener);
+    }
+
+    public static void removeListener(OnHolidaysChangedListener listener) {
+        sListeners.remove(listener);
+    }
+
+    private static void setDays(Days days) {
+        sDays = days;
+        sVersion.incrementAndGet();
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                // a listener may remove itself
+                for (int i = sListeners.size() - 1; i >= 0; i--) {
+                    sListeners.get(i).onHolidaysChanged();
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the bundled holidays in the background.
+     */
+    public static void loadAsync(final Context context) {
+        final Context appContext = context.getApplicationContext();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try (InputStream in = appContext.getAssets().open(HOLIDAY_FILE)) {
+                    setDays(parse(in));
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Failed to load bundled holidays", e);
+                }
+            }
+        });
+    }
+
+    private static Days parse(InputStream in) throws IOException {
+        TreeMap<Integer, byte[]> years = new TreeMap<Integer, byte[]>();
+        Calendar calendar = Calendar.getInstance();
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            int year = Integer.parseInt(key.substring(0, 4));
+            int month = Integer.parseInt(key.substring(4)) - 1;
+            calendar.clear();
+            calendar.set(year, month, 1);
+            // cell 0 is the Sunday on or before the 1st
+            calendar.add(Calendar.DAY_OF_MONTH, Calendar.SUNDAY - calendar.get(Calendar.DAY_OF_WEEK));
+            reader.beginArray();
+            for (int i = 0; reader.hasNext(); i++) {
+                int value = reader.nextInt();
+                if (i < GRID_CELLS && value != 0) {
+                    int cellYear = calendar.get(Calendar.YEAR);
+                    byte[] days = years.get(cellYear);
+                    if (days == null) {
+                        days = new byte[DAYS_PER_YEAR];
+                        years.put(cellYear, days);
+                    }
+                    int index = calendar.get(Calendar.MONTH) * 31
+                            + calendar.get(Calendar.DAY_OF_MONTH) - 1;
+                    // the month a cell belongs to knows best
+                    if (days[index] == 0 || calendar.get(Calendar.MONTH) == month) {
+                        days[index] = (byte) value;
+                    }
+                }
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            reader.endArray();
+        }
+        reader.endObject();
+
+        if (years.isEmpty()) {
+            return new Days(0, new byte[0]);
+        }
+        int firstYear = years.firstKey();
+        int lastYear = years.lastKey();
+        if (firstYear < Utils.YEAR_MIN - 1 || lastYear > Utils.YEAR_MAX + 1) {
+            throw new IOException("holidays out of range: " + firstYear + "-" + lastYear);
+        }
+        byte[] packed = new byte[(lastYear - firstYear + 1) * DAYS_PER_YEAR];
+        for (Map.Entry<Integer, byte[]> entry : years.entrySet()) {
+            System.arraycopy(entry.getValue(), 0, packed,
+                    (entry.getKey() - firstYear) * DAYS_PER_YEAR, DAYS_PER_YEAR);
+        }
+        return new Days(firstYear, packed);
+    }
+}
@@ -0,0 +1,201 @@
+package com.sprd.calendar.newmonth.data;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.CalendarContract;
+import android.provider.CalendarContract.Instances;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.android.calendar.Event;
+import com.android.calendar.Utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * App-wide cache of the instances shown by the newmonth views. Each entry is a
+ * 6-week window around one month, filled by a single Instances query, so day
+ * selection and task hints for that month are answered from memory. Every
+ * change to the calendar provider drops all windows.
+ */
+public class InstanceCache {
+
+    private static final String TAG = "InstanceCache";
+    private static final String SORT_EVENTS_BY =
+            "begin ASC, end DESC, title ASC";
+    private static final String SELECTION = "visible=1";
+    /* 6 weeks, always enough to cover a month and the cells around it */
+    private static final int WINDOW_DAYS = 42;
+    private static final int MAX_WINDOWS = 4;
+
+    private static InstanceCache sInstance;
+
+    private final Context mContext;
+    private final LinkedHashMap<Integer, Window> mWindows =
+            new LinkedHashMap<Integer, Window>(MAX_WINDOWS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Window> eldest) {
+                    return size() > MAX_WINDOWS;
+                }
+            };
+    private String mTimeZone;
+    private int mGeneration;
+
+    private final ContentObserver mObserver = new ContentObserver(
+            new Handler(Looper.getMainLooper())) {
+        @Override
+        public boolean deliverSelfNotifications() {
+            return true;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            invalidate();
+        }
+    };
+
+    /**
+     * Instances of one 6-week window, sorted by begin ASC, end DESC, title ASC.
+     */
+    public static class Window {
+        public final int startDay;
+        public final int endDay;
+        public final List<Event> events;
+
+        Window(int startDay, int endDay, List<Event> events) {
+            this.startDay = startDay;
+            this.endDay = endDay;
+            this.events = Collections.unmodifiableList(events);
+        }
+    }
+
+    private InstanceCache(Context context) {
+        mContext = context;
+        mContext.getContentResolver().registerContentObserver(
+                CalendarContract.CONTENT_URI, true, mObserver);
+    }
+
+    public static synchronized InstanceCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new InstanceCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Drops every cached window. Loads that are in flight while this is called
+     * are not stored.
+     */
+    public synchronized void invalidate() {
+        mWindows.clear();
+        mGeneration++;
+    }
+
+    /**
+     * @param month (0-11)
+     * @return the window around the given month, querying the provider only
+     *         if it is not cached yet. Must not be called on the UI thread
+     *         unless a cached window is expected.
+     */
+    public Window getMonthWindow(int year, int month) {
+        String tz = Utils.getTimeZone(mContext, null);
+        int key = year * 12 + month;
+        int generation;
+        synchronized (this) {
+            if (!tz.equals(mTimeZone)) {
+                mWindows.clear();
+                mTimeZone = tz;
+            }
+            Window window = mWindows.get(key);
+            if (window != null) {
+                return window;
+            }
+            generation = mGeneration;
+        }
+
+        int startDay = getJulianDay(tz, year, month, 1) - 6;
+        int endDay = startDay + WINDOW_DAYS - 1;
+        List<Event> events = queryInstances(tz, startDay, endDay);
+        if (events == null) {
+            // No permission yet, don't remember the empty result
+            return new Window(startDay, endDay, new ArrayList<Event>());
+        }
+        Window window = new Window(startDay, endDay, events);
+        synchronized (this) {
+            if (generation == mGeneration && tz.equals(mTimeZone)) {
+                mWindows.put(key, window);
+            }
+        }
+        return window;
+    }
+
+    /**
+     * @param month (0-11)
+     * @return the instances that overlap the given day, in display order
+     */
+    public List<Event> getEventsForDay(int year, int month, int day) {
+        Window window = getMonthWindow(year, month);
+        int julianDay = getJulianDay(Utils.getTimeZone(mContext, null), year, month, day);
+        List<Event> events = new ArrayList<>();
+        for (Event e : window.events) {
+            if (e.startDay <= julianDay && e.endDay >= julianDay) {
+                events.add(e);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @param month (0-11)
+     * @return the Julian day of the given date in the given timezone
+     */
+    public static int getJulianDay(String tz, int year, int month, int day) {
+        Time time = new Time(tz);
+        time.set(0, 0, 0, day, month, year);
+        long millis = time.normalize(true);
+        return Time.getJulianDay(millis, time.gmtoff);
+    }
+
+    private List<Event> queryInstances(String tz, int startDay, int endDay) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M
+                && PackageManager.PERMISSION_GRANTED != mContext
+                        .checkSelfPermission("android.permission.READ_CALENDAR")) {
+            return null;
+        }
+        ArrayList<Event> events = new ArrayList<Event>();
+        Time time = new Time(tz);
+        time.setJulianDay(startDay);
+        long startMillis = time.toMillis(true);
+        time.setJulianDay(endDay + 1);
+        long endMillis = time.toMillis(true) - 1;
+
+        Uri.Builder uriBuilder = Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(uriBuilder, startMillis);
+        ContentUris.appendId(uriBuilder, endMillis);
+        Cursor cursor = null;
+        try {
+            cursor = mContext.getContentResolver().query(uriBuilder.build(),
+                    Event.EVENT_PROJECTION, SELECTION, null, SORT_EVENTS_BY);
+            Event.buildEventsFromCursor(events, cursor, mContext, startDay, endDay);
+        } catch (SQLiteException e) {
+            Log.e(TAG, "e===" + e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,44 @@
+package com.sprd.calendar.newmonth.data;
+
+import com.android.calendar.Event;
+
+import java.util.List;
+
+/**
+ * Computes the task hint day mask of a month in one pass over the events,
+ * OR-ing the clipped [startDay, endDay] range of every event into the mask.
+ */
+public class TaskHintEngine {
+
+    private TaskHintEngine() {
+    }
+
+    /**
+     * @param events the events to scan, in any order
+     * @param firstDay Julian day of the first day of the month
+     * @param monthDays number of days in the month (at most 31)
+     * @return the month mask, bit (day - 1) is set when that day has an event
+     */
+    public static int computeMonthHints(List<Event> events, int firstDay, int monthDays) {
+        int lastDay = firstDay + monthDays - 1;
+        int allDays = rangeMask(0, monthDays - 1);
+        int hints = 0;
+        for (int i = 0, size = events.size(); i < size && hints != allDays; i++) {
+            Event e = events.get(i);
+            if (e.endDay < firstDay || e.startDay > lastDay) {
+                continue;
+            }
+            int from = Math.max(e.startDay, firstDay) - firstDay;
+            int to = Math.min(e.endDay, lastDay) - firstDay;
+            hints |= rangeMask(from, to);
+        }
+        return hints;
+    }
+
+    /**
+     * @return a mask with bits from..to (inclusive, 0-30) set
+     */
+    private static int rangeMask(int from, int to) {
+        return ((1 << (to + 1)) - 1) & ~((1 << from) - 1);
+    }
+}
@@ -19,6 +19,7 @@ import com.android.calendar.R;
 import com.sprd.calendar.newmonth.adapter.ScheduleAdapter;
 import com.sprd.calendar.newmonth.adapter.ScheduleOnItemClickListener;
 import com.sprd.calendar.newmonth.data.EventDao;
+import com.sprd.calendar.newmonth.data.InstanceCache;
 import com.sprd.calendar.newmonth.task.schedule.LoadScheduleTask;
 import com.sprd.calendar.newmonth.OnCalendarClickListener;
 import com.sprd.calendar.newmonth.schedule.ScheduleLayout;
@@ -253,6 +254,8 @@ public class ScheduleFragment extends Fragment implements
             }
             resetScheduleList();
         } else if (event.eventType == EventType.EVENTS_CHANGED) {
+            // The provider observer may not have fired yet, don't serve stale instances
+            InstanceCache.getInstance(getActivity()).invalidate();
             eventsChanged();
         }
         /* @} */
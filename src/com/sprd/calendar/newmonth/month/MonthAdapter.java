@@ -4,17 +4,26 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.support.v4.view.PagerAdapter;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewGroup.LayoutParams;
 
 import org.joda.time.DateTime;
 
+import java.util.ArrayDeque;
+
 import com.android.calendar.Utils;
 
 public class MonthAdapter extends PagerAdapter {
 
+    /* a pager keeps 3 pages attached, so a swipe frees at most one */
+    private static final int MAX_RECYCLED_VIEWS = 2;
+
     private SparseArray<MonthView> mViews;
+    private final ArrayDeque<MonthView> mRecycledViews = new ArrayDeque<MonthView>();
+    /* day selected on each page that was swiped away, restored when it comes back */
+    private final SparseIntArray mSelectedDays = new SparseIntArray();
     private Context mContext;
     private TypedArray mArray;
     private MonthCalendarView mMonthCalendarView;
@@ -37,15 +46,25 @@ public class MonthAdapter extends PagerAdapter {
     public Object instantiateItem(ViewGroup container, int position) {
         if (mViews.get(position) == null) {
             int date[] = getYearAndMonth(position);
-            MonthView monthView = new MonthView(mContext, mArray, date[0],
-                    date[1]);
+            MonthView monthView = mRecycledViews.poll();
+            if (monthView != null) {
+                monthView.bind(date[0], date[1]);
+            } else {
+                monthView = new MonthView(mContext, mArray, date[0], date[1]);
+                monthView.setLayoutParams(new LayoutParams(
+                        LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+                monthView.setOnDateClickListener(mMonthCalendarView);
+            }
+            int selectedDay = mSelectedDays.get(position);
+            if (selectedDay != 0) {
+                monthView.setSelectYearMonth(date[0], date[1], selectedDay);
+            }
             monthView.setId(position);
-            monthView.setLayoutParams(new LayoutParams(
-                    LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
             monthView.invalidate();
-            monthView.setOnDateClickListener(mMonthCalendarView);
             mViews.put(position, monthView);
         }
+        mViews.get(position).loadTaskHints();
+        mViews.get(position).loadRenderModel();
         container.addView(mViews.get(position));
         return mViews.get(position);
     }
@@ -63,7 +82,16 @@ public class MonthAdapter extends PagerAdapter {
 
     @Override
     public void destroyItem(ViewGroup container, int position, Object object) {
-        container.removeView((View) object);
+        MonthView monthView = (MonthView) object;
+        monthView.cancelLoads();
+        container.removeView(monthView);
+        if (mViews.get(position) == monthView) {
+            mSelectedDays.put(position, monthView.getSelectDay());
+            mViews.remove(position);
+        }
+        if (mRecycledViews.size() < MAX_RECYCLED_VIEWS) {
+            mRecycledViews.add(monthView);
+        }
     }
 
     @Override
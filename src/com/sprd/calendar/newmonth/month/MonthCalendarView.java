@@ -19,6 +19,19 @@ public class MonthCalendarView extends ViewPager implements
 
     private MonthAdapter mMonthAdapter;
     private OnCalendarClickListener mOnCalendarClickListener;
+    private int mScrollState = SCROLL_STATE_IDLE;
+    private final Runnable mRecordPages = new Runnable() {
+        @Override
+        public void run() {
+            int position = getCurrentItem();
+            for (int i = position - 1; i <= position + 1; i++) {
+                MonthView monthView = mMonthAdapter.getViews().get(i);
+                if (monthView != null && monthView.getParent() == MonthCalendarView.this) {
+                    monthView.recordPage();
+                }
+            }
+        }
+    };
 
     public MonthCalendarView(Context context) {
         this(context, null);
@@ -109,9 +122,22 @@ public class MonthCalendarView extends ViewPager implements
 
         @Override
         public void onPageScrollStateChanged(int state) {
+            mScrollState = state;
+            removeCallbacks(mRecordPages);
+            if (state == SCROLL_STATE_IDLE) {
+                // after the frame that settles the page
+                post(mRecordPages);
+            }
         }
     };
 
+    /**
+     * @return whether the pages are being dragged or are settling
+     */
+    public boolean isScrolling() {
+        return mScrollState != SCROLL_STATE_IDLE;
+    }
+
     /* SPRD: for bug730714, show wrong month when slide month view after select time@{ */
     public void setSelectToView(Time time) {
         Calendar calendar = Calendar.getInstance();
@@ -0,0 +1,200 @@
+package com.sprd.calendar.newmonth.month;
+
+import android.content.Context;
+import android.graphics.Paint;
+
+import com.android.calendar.Utils;
+import com.sprd.calendar.foreigncalendar.ForeignFestivalCalendar;
+import com.sprd.calendar.lunar.LunarCalendar;
+import com.sprd.calendar.lunar.LunarCalendarConvertUtil;
+import com.sprd.calendar.newmonth.CalendarUtils;
+import com.sprd.calendar.newmonth.data.HolidayStore;
+
+import java.util.Locale;
+
+/**
+ * Everything MonthView draws for one month that does not depend on the
+ * selection, today or the task hints: the day of each of the 42 cells, its
+ * text and measured width, the lunar or foreign festival label and the
+ * rest/work day badge. Built off the UI thread by LoadMonthRenderModelTask,
+ * never changed afterwards. A days only model, without labels and badges,
+ * is cheap enough to build on the UI thread while the full one is pending.
+ */
+public class MonthRenderModel {
+
+    public static final int CELLS = 42;
+
+    private static final String[] DAY_STRINGS = new String[32];
+
+    static {
+        for (int i = 1; i < DAY_STRINGS.length; i++) {
+            DAY_STRINGS[i] = String.valueOf(i);
+        }
+    }
+
+    public final int year;
+    public final int month;
+    public final int firstDayOfWeek;
+    public final boolean lunar;
+    public final Locale locale;
+    public final int holidayVersion;
+    public final float daySize;
+    public final float labelSize;
+    /* only the days are filled in, see buildDays */
+    public final boolean daysOnly;
+
+    /* cell of the 1st */
+    public final int firstCell;
+    public final int monthDays;
+    public final int monthRows;
+
+    public final int[] days = new int[CELLS];
+    public final String[] dayTexts = new String[CELLS];
+    public final float[] dayWidths = new float[CELLS];
+    /* null unless lunar or foreign festival labels are shown */
+    public final String[] labels;
+    public final float[] labelWidths;
+    public final boolean[] festivals;
+    public final int[] holidays = new int[CELLS];
+    public final boolean hasHoliday;
+
+    private MonthRenderModel(Context context, int year, int month, Paint dayPaint,
+            float labelSize, boolean daysOnly) {
+        this.year = year;
+        this.month = month;
+        this.daySize = dayPaint.getTextSize();
+        this.labelSize = labelSize;
+        this.daysOnly = daysOnly;
+        firstDayOfWeek = Utils.getFirstDayOfWeek(context);
+        lunar = Utils.mLunarFlag;
+        locale = Locale.getDefault();
+        holidayVersion = HolidayStore.getVersion();
+
+        firstCell = CalendarUtils.getFirstDayWeek(context, year, month, 1) - 1;
+        monthDays = CalendarUtils.getMonthDays(year, month);
+        monthRows = (firstCell + monthDays + 6) / 7;
+
+        int lastYear = month == 0 ? year - 1 : year;
+        int lastMonth = month == 0 ? 11 : month - 1;
+        int lastMonthDays = CalendarUtils.getMonthDays(lastYear, lastMonth);
+        int nextYear = month == 11 ? year + 1 : year;
+        int nextMonth = month == 11 ? 0 : month + 1;
+
+        for (int i = 0; i < CELLS; i++) {
+            int day = i - firstCell + 1;
+            if (day < 1) {
+                day += lastMonthDays;
+            } else if (day > monthDays) {
+                day -= monthDays;
+            }
+            days[i] = day;
+            dayTexts[i] = DAY_STRINGS[day];
+            dayWidths[i] = dayPaint.measureText(dayTexts[i]);
+        }
+
+        boolean foreign = Utils.mSupportForeignFestivalCalendar;
+        if (!daysOnly && (foreign || lunar)) {
+            labels = new String[CELLS];
+            labelWidths = new float[CELLS];
+            festivals = new boolean[CELLS];
+            ForeignFestivalCalendar foreignCalendar = null;
+            LunarCalendar lunarCalendar = null;
+            int[] lunarDates = null;
+            if (foreign) {
+                foreignCalendar = new ForeignFestivalCalendar(context);
+            } else {
+                lunarCalendar = new LunarCalendar(context);
+                lunarDates = new int[CELLS];
+                LunarCalendarConvertUtil.getPackedLunarDates(year, month, 1 - firstCell,
+                        lunarDates, CELLS);
+            }
+            Paint labelPaint = new Paint();
+            labelPaint.setTextSize(labelSize);
+            for (int i = 0; i < CELLS; i++) {
+                int cellYear = year, cellMonth = month;
+                if (i < firstCell) {
+                    cellYear = lastYear;
+                    cellMonth = lastMonth;
+                } else if (i >= firstCell + monthDays) {
+                    cellYear = nextYear;
+                    cellMonth = nextMonth;
+                }
+                String label;
+                if (foreign) {
+                    foreignCalendar.setDate(cellYear, cellMonth, days[i]);
+                    label = foreignCalendar.getForeignFestivalInfo();
+                    festivals[i] = foreignCalendar.isFastival;
+                } else {
+                    LunarCalendarConvertUtil.setLunarCalendar(lunarDates[i], cellYear,
+                            cellMonth, days[i], lunarCalendar);
+                    label = lunarCalendar.getLunarDayInfo();
+                    festivals[i] = lunarCalendar.mIsFastival;
+                }
+                labels[i] = label != null ? label : "";
+                labelWidths[i] = labelPaint.measureText(labels[i]);
+            }
+        } else {
+            labels = null;
+            labelWidths = null;
+            festivals = null;
+        }
+
+        boolean hasHoliday = false;
+        if (!daysOnly && lunar && HolidayStore.isShownFor(locale)) {
+            CalendarUtils.getHolidays(context, year, month, holidays);
+            for (int holiday : holidays) {
+                hasHoliday |= holiday != 0;
+            }
+        }
+        this.hasHoliday = hasHoliday;
+    }
+
+    /**
+     * @param month (0-11)
+     * @param daySize text size of the day numbers, in pixels
+     * @param labelSize text size of the lunar or festival labels, in pixels
+     */
+    public static MonthRenderModel build(Context context, int year, int month,
+            float daySize, float labelSize) {
+        Paint dayPaint = new Paint();
+        dayPaint.setTextSize(daySize);
+        return new MonthRenderModel(context, year, month, dayPaint, labelSize, false);
+    }
+
+    /**
+     * Builds the days of the month only, no labels or badges. Cheap enough
+     * for the UI thread, the model never matches so the full one is still
+     * built.
+     *
+     * @param dayPaint measures the day numbers, it is not changed
+     */
+    public static MonthRenderModel buildDays(Context context, int year, int month,
+            Paint dayPaint) {
+        return new MonthRenderModel(context, year, month, dayPaint, 0, true);
+    }
+
+    /**
+     * @return whether the model still shows the given month the way it would
+     *         be built now
+     */
+    public boolean matches(int year, int month, int firstDayOfWeek, boolean lunar,
+            Locale locale, int holidayVersion) {
+        return !daysOnly && this.year == year && this.month == month
+                && this.firstDayOfWeek == firstDayOfWeek && this.lunar == lunar
+                && this.locale.equals(locale) && this.holidayVersion == holidayVersion;
+    }
+
+    /**
+     * @return whether the cell shows a day of the previous or the next month
+     */
+    public boolean isOtherMonth(int cell) {
+        return cell < firstCell || cell >= firstCell + monthDays;
+    }
+
+    /**
+     * @return the cell of the given day of this month
+     */
+    public int getCell(int day) {
+        return firstCell + day - 1;
+    }
+}
@@ -8,26 +8,27 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.os.AsyncTask;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
 
+import com.android.calendar.DrawAllocationAudit;
 import com.android.calendar.R;
-import com.sprd.calendar.newmonth.data.EventDao;
+import com.sprd.calendar.newmonth.listener.OnTaskFinishedListener;
+import com.sprd.calendar.newmonth.task.hint.LoadTaskHintTask;
+import com.sprd.calendar.newmonth.task.month.LoadMonthRenderModelTask;
 import com.sprd.calendar.newmonth.CalendarUtils;
+import com.sprd.calendar.newmonth.PageRenderCache;
+import com.sprd.calendar.newmonth.data.HolidayStore;
 import com.android.calendar.Utils;
 
-import com.sprd.calendar.lunar.LunarCalendar;
-import com.sprd.calendar.lunar.LunarCalendarConvertUtil;
-import com.sprd.calendar.foreigncalendar.ForeignFestivalCalendar;
-
-import java.util.Calendar;
-import java.util.List;
+import java.util.Locale;
 import android.text.format.Time;
 
-public class MonthView extends View {
+public class MonthView extends View implements PageRenderCache.Page {
 
     private static final int NUM_COLUMNS = 7;
     private static final int NUM_ROWS = 6;
@@ -48,20 +49,62 @@ public class MonthView extends View {
     private int mLunarTextSize;
     private int mWeekRow;
     private int mCircleRadius = 3;
-    private int[][] mDaysText;
-    private int[] mHolidays;
-    private String[][] mHolidayOrLunarText;
+    private final Rect mHolidaySrcRect = new Rect();
+    private final Rect mHolidayDstRect = new Rect();
     private boolean mIsShowHint;
+    private int mTaskHintVersion = -1;
+    private LoadTaskHintTask mTaskHintTask;
+    private final OnTaskFinishedListener<Boolean> mTaskHintListener =
+            new OnTaskFinishedListener<Boolean>() {
+                @Override
+                public void setNeedUpdate(boolean update) {
+                }
+
+                @Override
+                public void onTaskFinished(Boolean changed) {
+                    refreshTaskHints();
+                }
+            };
+    private MonthRenderModel mRenderModel;
+    private final int[] mRenderState = new int[6];
+    // Whether the last draw replayed the page cache
+    private boolean mDrawnFromCache;
+    private LoadMonthRenderModelTask mRenderModelTask;
+    private final OnTaskFinishedListener<MonthRenderModel> mRenderModelListener =
+            new OnTaskFinishedListener<MonthRenderModel>() {
+                @Override
+                public void setNeedUpdate(boolean update) {
+                }
+
+                @Override
+                public void onTaskFinished(MonthRenderModel model) {
+                    mRenderModelTask = null;
+                    if (model.year == mSelYear && model.month == mSelMonth) {
+                        // The settings may have changed since they were last read
+                        refreshSettings();
+                        mRenderModel = model;
+                        invalidate();
+                    }
+                }
+            };
+    private final HolidayStore.OnHolidaysChangedListener mHolidaysListener =
+            new HolidayStore.OnHolidaysChangedListener() {
+                @Override
+                public void onHolidaysChanged() {
+                    invalidate();
+                }
+            };
+    // Read once rather than on every frame, see refreshSettings
+    private int mFirstDayOfWeek;
+    private Locale mLocale;
+    private final Time mCurrTime = new Time();
+    private long mTodayStartMillis, mTodayEndMillis;
     private boolean mIsShowHolidayHint;
     private DisplayMetrics mDisplayMetrics;
     private OnMonthClickListener mDateClickListener;
     private GestureDetector mGestureDetector;
     private Bitmap mRestBitmap, mWorkBitmap;
 
-    protected boolean[][] mLunarDayNumbersIsFest;
-    private LunarCalendar mLunarCalendar;
-    private ForeignFestivalCalendar mForeignFestivalCalendar;
-
     public MonthView(Context context, int year, int month) {
         this(context, null, year, month);
     }
@@ -79,22 +122,111 @@ public class MonthView extends View {
             int defStyleAttr, int year, int month) {
         super(context, attrs, defStyleAttr);
         initAttrs(array, year, month);
+        refreshSettings();
         initPaint();
         initMonth();
         initGestureDetector();
-        initTaskHint();
-        if (Utils.mSupportForeignFestivalCalendar) {
-            mForeignFestivalCalendar = new ForeignFestivalCalendar(context);
-        } else if (Utils.mLunarFlag) {
-            mLunarCalendar = new LunarCalendar(context);
+        loadTaskHints();
+        loadRenderModel();
+    }
+
+    /**
+     * Rebinds a recycled page to another month, keeping its paints, arrays
+     * and listeners. Pending loads of the old month are dropped.
+     */
+    public void bind(int year, int month) {
+        cancelLoads();
+        mTaskHintTask = null;
+        mTaskHintVersion = -1;
+        mRenderModel = null;
+        mWeekRow = 0;
+        mSelYear = year;
+        mSelMonth = month;
+        refreshSettings();
+        initMonth();
+        loadTaskHints();
+        loadRenderModel();
+        invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        HolidayStore.addListener(mHolidaysListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        HolidayStore.removeListener(mHolidaysListener);
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        if (visibility == VISIBLE) {
+            // e.g. back from the settings
+            refreshSettings();
         }
     }
 
-    private void initTaskHint() {
-        if (mIsShowHint) {
-            EventDao dao = EventDao.getInstance(getContext());
-            CalendarUtils.getInstance(getContext()).addTaskHints(mSelYear,
-                    mSelMonth, dao.getTaskHintByMonth(mSelYear, mSelMonth));
+    /**
+     * Reads the settings the page is drawn with. Done when the page is
+     * created or bound and when it comes back on screen, not on every frame.
+     */
+    private void refreshSettings() {
+        mFirstDayOfWeek = Utils.getFirstDayOfWeek(getContext());
+        mLocale = Locale.getDefault();
+    }
+
+    /**
+     * Builds the render model of this month in the background, so the first
+     * draw of a page that was swiped in usually finds it ready. Does nothing
+     * if a build is running or the model is up to date.
+     */
+    public void loadRenderModel() {
+        if (mRenderModelTask != null
+                || (mRenderModel != null && isCurrent(mRenderModel))) {
+            return;
+        }
+        mRenderModelTask = new LoadMonthRenderModelTask(getContext(),
+                mRenderModelListener, mSelYear, mSelMonth, mPaint.getTextSize(),
+                mLunarPaint.getTextSize());
+        mRenderModelTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Loads the task hints of this month in the background, the view draws
+     * with the hints already known until the load finishes. Does nothing if
+     * a load is running or done.
+     */
+    public void loadTaskHints() {
+        if (mIsShowHint && mTaskHintTask == null) {
+            mTaskHintTask = new LoadTaskHintTask(getContext(), mTaskHintListener,
+                    mSelYear, mSelMonth, mSelYear, mSelMonth);
+            mTaskHintTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    }
+
+    /**
+     * Cancels a pending task hint load, e.g. when the page is swiped away.
+     */
+    public void cancelTaskHintLoad() {
+        if (mTaskHintTask != null
+                && mTaskHintTask.getStatus() != AsyncTask.Status.FINISHED) {
+            mTaskHintTask.cancel(false);
+            mTaskHintTask = null;
+        }
+    }
+
+    /**
+     * Cancels the background loads of this page, e.g. when it is swiped away.
+     */
+    public void cancelLoads() {
+        cancelTaskHintLoad();
+        if (mRenderModelTask != null) {
+            mRenderModelTask.cancel(false);
+            mRenderModelTask = null;
         }
     }
 
@@ -170,12 +302,6 @@ public class MonthView extends View {
         }
         mSelYear = year;
         mSelMonth = month;
-        mRestBitmap = BitmapFactory.decodeResource(getResources(),
-                R.drawable.ic_rest_day);
-        mWorkBitmap = BitmapFactory.decodeResource(getResources(),
-                R.drawable.ic_work_day);
-        mHolidays = CalendarUtils.getInstance(getContext()).getHolidays(
-                mSelYear, mSelMonth + 1);
     }
 
     private void initPaint() {
@@ -220,17 +346,104 @@ public class MonthView extends View {
 
     @Override
     protected void onDraw(Canvas canvas) {
+        int allocations = DrawAllocationAudit.begin();
+        mTaskHintVersion = CalendarUtils.getInstance(getContext()).getTaskHintVersion();
+        prepareDraw();
+        mDrawnFromCache = isPagerScrolling() && PageRenderCache.getInstance().draw(canvas,
+                PageRenderCache.monthKey(mSelYear, mSelMonth), mRenderState,
+                getWidth(), getHeight());
+        if (!mDrawnFromCache) {
+            drawPage(canvas);
+        }
+        DrawAllocationAudit.end("newmonth.MonthView", allocations);
+    }
+
+    /**
+     * Records this page into the page cache so it can be replayed during
+     * the next swipe.
+     */
+    public void recordPage() {
+        if (mDrawnFromCache) {
+            // Let go of the replayed bitmap, the cache may draw another page into it
+            mDrawnFromCache = false;
+            invalidate();
+        }
+        if (getWidth() == 0 || getHeight() == 0
+                || mRenderModel == null || !isCurrent(mRenderModel)) {
+            return;
+        }
+        prepareDraw();
+        PageRenderCache.getInstance().record(this,
+                PageRenderCache.monthKey(mSelYear, mSelMonth), mRenderState,
+                getWidth(), getHeight());
+    }
+
+    private boolean isPagerScrolling() {
+        return getParent() instanceof MonthCalendarView
+                && ((MonthCalendarView) getParent()).isScrolling();
+    }
+
+    /**
+     * Brings the sizes up to date and fills mRenderState with everything the
+     * page depends on besides its month. The model itself is only needed
+     * when the page is drawn live.
+     */
+    private void prepareDraw() {
         initCurrentDate();                 //Sprd Modify for bug756857
         initSize();
-        clearData();
-        drawLastMonth(canvas);
-        int selected[] = drawThisMonth(canvas);
-        drawNextMonth(canvas);
-        drawHintCircle(canvas);
-        if (Utils.mLunarFlag || Utils.mSupportForeignFestivalCalendar) {
-            drawLunarText(canvas, selected);
+        if (mRenderModel != null) {
+            updateWeekRow(mRenderModel);
+        }
+        mRenderState[0] = mSelDay;
+        mRenderState[1] = mSelYear == mCurrYear && mSelMonth == mCurrMonth ? mCurrDay : 0;
+        mRenderState[2] = CalendarUtils.getInstance(getContext()).getTaskHintVersion();
+        mRenderState[3] = mFirstDayOfWeek;
+        mRenderState[4] = HolidayStore.getVersion();
+        mRenderState[5] = Utils.mLunarFlag ? 1 : 0;
+    }
+
+    private void updateWeekRow(MonthRenderModel model) {
+        if (mSelDay >= 1 && mSelDay <= model.monthDays) {
+            mWeekRow = model.getCell(mSelDay) / NUM_COLUMNS + 1;
+        }
+    }
+
+    @Override
+    public void drawPage(Canvas canvas) {
+        MonthRenderModel model = getRenderModel();
+        if (model == null) {
+            // Show the grid and days right away, the labels and badges follow
+            // when the background build finishes
+            model = MonthRenderModel.buildDays(getContext(), mSelYear, mSelMonth, mPaint);
+            mRenderModel = model;
         }
-        // drawHoliday(canvas);
+        updateWeekRow(model);
+        drawDays(canvas, model);
+        drawHintCircle(canvas, model);
+        if (model.labels != null) {
+            drawLunarText(canvas, model);
+        }
+        if (model.hasHoliday) {
+            drawHoliday(canvas, model);
+        }
+    }
+
+    /**
+     * @return the render model of this month, null if it is not built yet.
+     *         A days only model or one that no longer matches the settings is
+     *         still returned while a new one is built in the background.
+     */
+    private MonthRenderModel getRenderModel() {
+        MonthRenderModel model = mRenderModel;
+        if (model == null || !isCurrent(model)) {
+            loadRenderModel();
+        }
+        return model;
+    }
+
+    private boolean isCurrent(MonthRenderModel model) {
+        return model.matches(mSelYear, mSelMonth, mFirstDayOfWeek, Utils.mLunarFlag,
+                mLocale, HolidayStore.getVersion());
     }
 
     private void initSize() {
@@ -242,156 +455,43 @@ public class MonthView extends View {
         }
     }
 
-    private void clearData() {
-        mDaysText = new int[6][7];
-        mHolidayOrLunarText = new String[6][7];
-        mLunarDayNumbersIsFest = new boolean[6][7];
+    private boolean isTodaySelected() {
+        return mSelYear == mCurrYear && mSelMonth == mCurrMonth && mSelDay == mCurrDay;
     }
 
-    private void drawLastMonth(Canvas canvas) {
-        int lastYear, lastMonth;
-        if (mSelMonth == 0) {
-            lastYear = mSelYear - 1;
-            lastMonth = 11;
-        } else {
-            lastYear = mSelYear;
-            lastMonth = mSelMonth - 1;
-        }
-        mPaint.setColor(mLastOrNextMonthTextColor);
-        int monthDays = CalendarUtils.getMonthDays(lastYear, lastMonth);
-        int weekNumber = CalendarUtils.getFirstDayWeek(getContext(), mSelYear, mSelMonth, 1);
-        for (int day = 0; day < weekNumber - 1; day++) {
-            mDaysText[0][day] = monthDays - weekNumber + day + 2;
-            String dayString = String.valueOf(mDaysText[0][day]);
-            int startX = (int) (mColumnSize * day + (mColumnSize - mPaint
-                    .measureText(dayString)) / 2);
-            int startY = (int) (mRowSize / 2 - (mPaint.ascent() + mPaint
-                    .descent()) / 2);
-            canvas.drawText(dayString, startX, startY, mPaint);
-            /* SPRD: Add for bug733823, add solar term and foreign festival info. @{ */
-            if (Utils.mSupportForeignFestivalCalendar) {
-                mForeignFestivalCalendar.setDate(lastYear, lastMonth,
-                        mDaysText[0][day]);
-                mHolidayOrLunarText[0][day] = mForeignFestivalCalendar
-                        .getForeignFestivalInfo();
-                mLunarDayNumbersIsFest[0][day] = mForeignFestivalCalendar.isFastival;
-            } else if (Utils.mLunarFlag) {
-                LunarCalendarConvertUtil.parseLunarCalendar(lastYear,
-                        lastMonth, mDaysText[0][day], mLunarCalendar);
-                mHolidayOrLunarText[0][day] = mLunarCalendar.getLunarDayInfo();
-                mLunarDayNumbersIsFest[0][day] = mLunarCalendar.mIsFastival;
-            }
-            /* @} */
-        }
-    }
-
-    private int[] drawThisMonth(Canvas canvas) {
-        String dayString;
-        int selectedPoint[] = new int[3];
-        int monthDays = CalendarUtils.getMonthDays(mSelYear, mSelMonth);
-        int weekNumber = CalendarUtils.getFirstDayWeek(getContext(), mSelYear, mSelMonth, 1);
-        for (int day = 0; day < monthDays; day++) {
-            dayString = String.valueOf(day + 1);
-            int col = (day + weekNumber - 1) % 7;
-            int row = (day + weekNumber - 1) / 7;
-            mDaysText[row][col] = day + 1;
-            int startX = (int) (mColumnSize * col + (mColumnSize - mPaint
-                    .measureText(dayString)) / 2);
-            int startY = (int) (mRowSize * row + mRowSize / 2 - (mPaint
-                    .ascent() + mPaint.descent()) / 2);
-            if (dayString.equals(String.valueOf(mSelDay))) {
-                int startRecX = mColumnSize * col;
-                int startRecY = mRowSize * row;
-                int endRecX = startRecX + mColumnSize;
-                int endRecY = startRecY + mRowSize;
-                if (mSelYear == mCurrYear && mCurrMonth == mSelMonth
-                        && day + 1 == mCurrDay) {
-                    mPaint.setColor(mSelectBGTodayColor);
-                } else {
-                    mPaint.setColor(mSelectBGColor);
-                    mPaint.setStyle(Paint.Style.STROKE);
-                    mPaint.setStrokeWidth(2);
-                }
-                canvas.drawCircle((startRecX + endRecX) / 2,
-                        (startRecY + endRecY) / 2 + 2, mSelectCircleSize, mPaint);              //Sprd Modify for bug746291
-                mWeekRow = row + 1;
-                mPaint.setStyle(Paint.Style.FILL);
-                mPaint.setStrokeWidth(1);
+    private void drawDays(Canvas canvas, MonthRenderModel model) {
+        boolean todaySelected = isTodaySelected();
+        int selectedCell = -1;
+        if (mSelDay >= 1 && mSelDay <= model.monthDays) {
+            selectedCell = model.getCell(mSelDay);
+            int col = selectedCell % NUM_COLUMNS;
+            int row = selectedCell / NUM_COLUMNS;
+            if (todaySelected) {
+                mPaint.setColor(mSelectBGTodayColor);
+            } else {
+                mPaint.setColor(mSelectBGColor);
+                mPaint.setStyle(Paint.Style.STROKE);
+                mPaint.setStrokeWidth(2);
             }
-            if (dayString.equals(String.valueOf(mSelDay))
-                    && mCurrMonth == mSelMonth && mCurrYear == mSelYear
-                    && mCurrDay == mSelDay) {
-                selectedPoint[0] = row;
-                selectedPoint[1] = col;
-                selectedPoint[2] = 1;
+            canvas.drawCircle(mColumnSize * col + mColumnSize / 2,
+                    mRowSize * row + mRowSize / 2 + 2, mSelectCircleSize, mPaint);              //Sprd Modify for bug746291
+            mPaint.setStyle(Paint.Style.FILL);
+            mPaint.setStrokeWidth(1);
+        }
+        float baseline = mRowSize / 2 - (mPaint.ascent() + mPaint.descent()) / 2;
+        for (int i = 0; i < MonthRenderModel.CELLS; i++) {
+            int col = i % NUM_COLUMNS;
+            int row = i / NUM_COLUMNS;
+            if (model.isOtherMonth(i)) {
+                mPaint.setColor(mLastOrNextMonthTextColor);
+            } else if (i == selectedCell && todaySelected) {
                 mPaint.setColor(mSelectDayColor);
-            } else if (dayString.equals(String.valueOf(mCurrDay))
-                    && mCurrDay != mSelDay && mCurrMonth == mSelMonth
-                    && mCurrYear == mSelYear) {
-                mPaint.setColor(mNormalDayColor);
             } else {
                 mPaint.setColor(mNormalDayColor);
             }
-            canvas.drawText(dayString, startX, startY, mPaint);
-            /* SPRD: Add for bug733823, add solar term and foreign festival info. @{ */
-            if (Utils.mSupportForeignFestivalCalendar) {
-                mForeignFestivalCalendar.setDate(mSelYear, mSelMonth,
-                        mDaysText[row][col]);
-                mHolidayOrLunarText[row][col] = mForeignFestivalCalendar
-                        .getForeignFestivalInfo();
-                mLunarDayNumbersIsFest[row][col] = mForeignFestivalCalendar.isFastival;
-            } else if (Utils.mLunarFlag) {
-                LunarCalendarConvertUtil.parseLunarCalendar(mSelYear,
-                        mSelMonth, mDaysText[row][col], mLunarCalendar);
-                mHolidayOrLunarText[row][col] = mLunarCalendar
-                        .getLunarDayInfo();
-                mLunarDayNumbersIsFest[row][col] = mLunarCalendar.mIsFastival;
-            }
-            /* @} */
-        }
-        return selectedPoint;
-    }
-
-    private void drawNextMonth(Canvas canvas) {
-        mPaint.setColor(mLastOrNextMonthTextColor);
-        int monthDays = CalendarUtils.getMonthDays(mSelYear, mSelMonth);
-        int weekNumber = CalendarUtils.getFirstDayWeek(getContext(), mSelYear, mSelMonth, 1);
-        int nextMonthDays = 42 - monthDays - weekNumber + 1;
-        int nextMonth = mSelMonth + 1;
-        int nextYear = mSelYear;
-        if (nextMonth == 12) {
-            nextMonth = 0;
-            nextYear += 1;
-        }
-        for (int day = 0; day < nextMonthDays; day++) {
-            int column = (monthDays + weekNumber - 1 + day) % 7;
-            int row = 5 - (nextMonthDays - day - 1) / 7;
-            try {
-                mDaysText[row][column] = day + 1;
-                /* SPRD: Add for bug733823, add solar term and foreign festival info. @{ */
-                if (Utils.mSupportForeignFestivalCalendar) {
-                    mForeignFestivalCalendar.setDate(nextYear, nextMonth,
-                            mDaysText[row][column]);
-                    mHolidayOrLunarText[row][column] = mForeignFestivalCalendar
-                            .getForeignFestivalInfo();
-                    mLunarDayNumbersIsFest[row][column] = mForeignFestivalCalendar.isFastival;
-                } else if (Utils.mLunarFlag) {
-                    LunarCalendarConvertUtil.parseLunarCalendar(nextYear,
-                            nextMonth, mDaysText[row][column], mLunarCalendar);
-                    mHolidayOrLunarText[row][column] = mLunarCalendar
-                            .getLunarDayInfo();
-                    mLunarDayNumbersIsFest[row][column] = mLunarCalendar.mIsFastival;
-                }
-                /* @} */
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-            String dayString = String.valueOf(mDaysText[row][column]);
-            int startX = (int) (mColumnSize * column + (mColumnSize - mPaint
-                    .measureText(dayString)) / 2);
-            int startY = (int) (mRowSize * row + mRowSize / 2 - (mPaint
-                    .ascent() + mPaint.descent()) / 2);
-            canvas.drawText(dayString, startX, startY, mPaint);
+            int startX = (int) (mColumnSize * col + (mColumnSize - model.dayWidths[i]) / 2);
+            int startY = (int) (mRowSize * row + baseline);
+            canvas.drawText(model.dayTexts[i], startX, startY, mPaint);
         }
     }
 
@@ -399,51 +499,60 @@ public class MonthView extends View {
      *
      *
      * @param canvas
-     * @param selected
+     * @param model
      */
-    private void drawLunarText(Canvas canvas, int[] selected) {
-        for (int i = 0; i < 42; i++) {
+    private void drawLunarText(Canvas canvas, MonthRenderModel model) {
+        int todayCell = isTodaySelected() ? model.getCell(mSelDay) : -1;
+        float baseline = (float) (mRowSize * 0.72
+                - (mLunarPaint.ascent() + mLunarPaint.descent()) / 2 + 6);
+        for (int i = 0; i < MonthRenderModel.CELLS; i++) {
             int column = i % 7;
             int row = i / 7;
-            if (!mLunarDayNumbersIsFest[row][column]) {
-                mLunarPaint.setColor(mLunarTextColor);
-            } else {
-                mLunarPaint.setColor(mHolidayTextColor);
-            }
-            String dayString = mHolidayOrLunarText[row][column];
-            if (row == 0 && mDaysText[row][column] >= 23 || row >= 4
-                    && mDaysText[row][column] <= 14) {
-                mLunarPaint.setColor(mLastOrNextMonthTextColor);
-            }
-            if (selected[0] == row && selected[1] == column && selected[2] == 1) {
+            if (i == todayCell) {
                 mLunarPaint.setColor(mSelectDayColor);
+            } else if (model.isOtherMonth(i)) {
+                mLunarPaint.setColor(mLastOrNextMonthTextColor);
+            } else if (model.festivals[i]) {
+                mLunarPaint.setColor(mHolidayTextColor);
+            } else {
+                mLunarPaint.setColor(mLunarTextColor);
             }
-            int startX = (int) (mColumnSize * column + (mColumnSize - mLunarPaint
-                    .measureText(dayString)) / 2);
-            int startY = (int) (mRowSize * row + mRowSize * 0.72
-                    - (mLunarPaint.ascent() + mLunarPaint.descent()) / 2 + 6);
-            canvas.drawText(dayString, startX, startY, mLunarPaint);
+            int startX = (int) (mColumnSize * column + (mColumnSize - model.labelWidths[i]) / 2);
+            int startY = (int) (mRowSize * row + baseline);
+            canvas.drawText(model.labels[i], startX, startY, mLunarPaint);
+        }
+    }
+
+    private void ensureHolidayBitmaps() {
+        if (mRestBitmap == null) {
+            mRestBitmap = BitmapFactory.decodeResource(getResources(),
+                    R.drawable.ic_rest_day);
+            mWorkBitmap = BitmapFactory.decodeResource(getResources(),
+                    R.drawable.ic_work_day);
+            mHolidaySrcRect.set(0, 0, mRestBitmap.getWidth(), mRestBitmap.getHeight());
         }
     }
 
-    private void drawHoliday(Canvas canvas) {
+    private void drawHoliday(Canvas canvas, MonthRenderModel model) {
         if (mIsShowHolidayHint) {
-            Rect rect = new Rect(0, 0, mRestBitmap.getWidth(),
-                    mRestBitmap.getHeight());
-            Rect rectF = new Rect();
+            ensureHolidayBitmaps();
             int distance = (int) (mSelectCircleSize / 2.5);
-            for (int i = 0; i < mHolidays.length; i++) {
+            for (int i = 0; i < MonthRenderModel.CELLS; i++) {
+                Bitmap bitmap;
+                if (model.holidays[i] == HolidayStore.REST_DAY) {
+                    bitmap = mRestBitmap;
+                } else if (model.holidays[i] == HolidayStore.WORK_DAY) {
+                    bitmap = mWorkBitmap;
+                } else {
+                    continue;
+                }
                 int column = i % 7;
                 int row = i / 7;
-                rectF.set(mColumnSize * (column + 1) - mRestBitmap.getWidth()
+                mHolidayDstRect.set(mColumnSize * (column + 1) - mRestBitmap.getWidth()
                         - distance, mRowSize * row + distance, mColumnSize
                         * (column + 1) - distance,
                         mRowSize * row + mRestBitmap.getHeight() + distance);
-                if (mHolidays[i] == 1) {
-                    canvas.drawBitmap(mRestBitmap, rect, rectF, null);
-                } else if (mHolidays[i] == 2) {
-                    canvas.drawBitmap(mWorkBitmap, rect, rectF, null);
-                }
+                canvas.drawBitmap(bitmap, mHolidaySrcRect, mHolidayDstRect, null);
             }
         }
     }
@@ -455,20 +564,18 @@ public class MonthView extends View {
      * @param
      * @param canvas
      */
-    private void drawHintCircle(Canvas canvas) {
+    private void drawHintCircle(Canvas canvas, MonthRenderModel model) {
         if (mIsShowHint) {
-            List<Integer> hints = CalendarUtils.getInstance(getContext())
+            int hints = CalendarUtils.getInstance(getContext())
                     .getTaskHints(mSelYear, mSelMonth);
-            if (hints.size() > 0) {
+            if (hints != 0) {
                 mPaint.setColor(mHintCircleColor);
-                int monthDays = CalendarUtils.getMonthDays(mSelYear, mSelMonth);
-                int weekNumber = CalendarUtils.getFirstDayWeek(getContext(), mSelYear,
-                        mSelMonth, 1);
-                for (int day = 0; day < monthDays; day++) {
-                    int col = (day + weekNumber - 1) % 7;
-                    int row = (day + weekNumber - 1) / 7;
-                    if (!hints.contains(day + 1))
+                for (int day = 0; day < model.monthDays; day++) {
+                    if (!CalendarUtils.hasTaskHint(hints, day + 1))
                         continue;
+                    int cell = model.getCell(day + 1);
+                    int col = cell % 7;
+                    int row = cell / 7;
                     float circleX = (float) (mColumnSize * col + mColumnSize * 0.5);
                     float circleY = (float) (mRowSize * row + mRowSize * 0.25);
                     canvas.drawCircle(circleX, circleY, mCircleRadius, mPaint);
@@ -494,11 +601,11 @@ public class MonthView extends View {
     }
 
     private void doClickAction(int x, int y) {
-        if (y > getHeight() || mRowSize == 0 || mColumnSize == 0)
+        MonthRenderModel model = mRenderModel;
+        if (y > getHeight() || mRowSize == 0 || mColumnSize == 0 || model == null)
             return;
         /* UNISOC: Modify for bug1236177 {@ */
-        boolean curMonthRow = CalendarUtils.getMonthRows(getContext(),
-                mSelYear, mSelMonth) <= 5;
+        boolean curMonthRow = model.monthRows <= 5;
         int row = y / mRowSize;
         if (curMonthRow && (row > 4)) {
             return;
@@ -506,42 +613,34 @@ public class MonthView extends View {
         /* }@ */
         int column = x / mColumnSize;
         column = Math.min(column, 6);
+        if (column < 0 || row < 0 || row >= NUM_ROWS) {     //Sprd modify for bug774495
+            return;
+        }
+        int cell = row * NUM_COLUMNS + column;
+        int day = model.days[cell];
         int clickYear = mSelYear, clickMonth = mSelMonth;
-        if (row == 0) {
-            if (mDaysText[row][column] >= 23) {
-                if (mSelMonth == 0) {
-                    clickYear = mSelYear - 1;
-                    clickMonth = 11;
-                } else {
-                    clickYear = mSelYear;
-                    clickMonth = mSelMonth - 1;
-                }
-                if (mDateClickListener != null) {
-                    mDateClickListener.onClickLastMonth(clickYear, clickMonth,
-                            mDaysText[row][column]);
-                }
+        if (cell < model.firstCell) {
+            if (mSelMonth == 0) {
+                clickYear = mSelYear - 1;
+                clickMonth = 11;
             } else {
-                clickThisMonth(clickYear, clickMonth, mDaysText[row][column]);
+                clickMonth = mSelMonth - 1;
             }
-        } else {
-            int monthDays = CalendarUtils.getMonthDays(mSelYear, mSelMonth);
-            int weekNumber = CalendarUtils.getFirstDayWeek(getContext(), mSelYear, mSelMonth, 1);
-            int nextMonthDays = 42 - monthDays - weekNumber + 1;
-            if (column >= 0 && row < 6 && column < 7 && row >= 4 && mDaysText[row][column] <= nextMonthDays) {     //Sprd modify for bug744064,774495
-                if (mSelMonth == 11) {
-                    clickYear = mSelYear + 1;
-                    clickMonth = 0;
-                } else {
-                    clickYear = mSelYear;
-                    clickMonth = mSelMonth + 1;
-                }
-                if (mDateClickListener != null) {
-                    mDateClickListener.onClickNextMonth(clickYear, clickMonth,
-                            mDaysText[row][column]);
-                }
-            } else if (column >= 0 && row >= 0 && row < 6 && column < 7) {     //Sprd modify for bug774495
-                clickThisMonth(clickYear, clickMonth, mDaysText[row][column]);
+            if (mDateClickListener != null) {
+                mDateClickListener.onClickLastMonth(clickYear, clickMonth, day);
             }
+        } else if (model.isOtherMonth(cell)) {     //Sprd modify for bug744064
+            if (mSelMonth == 11) {
+                clickYear = mSelYear + 1;
+                clickMonth = 0;
+            } else {
+                clickMonth = mSelMonth + 1;
+            }
+            if (mDateClickListener != null) {
+                mDateClickListener.onClickNextMonth(clickYear, clickMonth, day);
+            }
+        } else {
+            clickThisMonth(clickYear, clickMonth, day);
         }
     }
 
@@ -598,9 +697,9 @@ public class MonthView extends View {
     /**
      * 
      * 
-     * @param hints
+     * @param hints day mask, see {@link CalendarUtils#taskHintBit}
      */
-    public void addTaskHints(List<Integer> hints) {
+    public void addTaskHints(int hints) {
         if (mIsShowHint) {
             CalendarUtils.getInstance(getContext()).addTaskHints(mSelYear,
                     mSelMonth, hints);
@@ -611,9 +710,9 @@ public class MonthView extends View {
     /**
      * 
      * 
-     * @param hints
+     * @param hints day mask, see {@link CalendarUtils#taskHintBit}
      */
-    public void removeTaskHints(List<Integer> hints) {
+    public void removeTaskHints(int hints) {
         if (mIsShowHint) {
             CalendarUtils.getInstance(getContext()).removeTaskHints(mSelYear,
                     mSelMonth, hints);
@@ -662,13 +761,34 @@ public class MonthView extends View {
         this.mDateClickListener = dateClickListener;
     }
 
+    /**
+     * Redraws the view only if some task hint changed since its last draw.
+     */
+    public void refreshTaskHints() {
+        if (mIsShowHint && mTaskHintVersion != CalendarUtils.getInstance(
+                getContext()).getTaskHintVersion()) {
+            invalidate();
+        }
+    }
+
     /* SPRD: Modify for bug756857,1169506, Unable to show Current date when change date in Settings @{ */
     private void initCurrentDate(){
-        Time currTime = new Time(Utils.getTimeZone(getContext(), null));
-        currTime.setToNow();
-        mCurrYear = currTime.year;
-        mCurrMonth = currTime.month;
-        mCurrDay = currTime.monthDay;
+        String timeZone = Utils.getTimeZone(getContext(), null);
+        long now = System.currentTimeMillis();
+        if (now >= mTodayStartMillis && now < mTodayEndMillis
+                && timeZone.equals(mCurrTime.timezone)) {
+            return;
+        }
+        mCurrTime.timezone = timeZone;
+        mCurrTime.set(now);
+        mCurrYear = mCurrTime.year;
+        mCurrMonth = mCurrTime.month;
+        mCurrDay = mCurrTime.monthDay;
+        // Read again once the day is over or the clock is set outside it
+        mCurrTime.set(0, 0, 0, mCurrDay, mCurrMonth, mCurrYear);
+        mTodayStartMillis = mCurrTime.normalize(true);
+        mCurrTime.monthDay++;
+        mTodayEndMillis = mCurrTime.normalize(true);
     }
     /* @} */
 }
@@ -28,7 +28,6 @@ import java.util.TimeZone;
 import org.joda.time.DateTime;
 
 import java.util.Calendar;
-import java.util.List;
 import java.lang.Math;
 
 public class ScheduleLayout extends FrameLayout {
@@ -604,41 +603,41 @@ public class ScheduleLayout extends FrameLayout {
 
     /**
      *
-     * @param hints
+     * @param hints day mask, see {@link CalendarUtils#taskHintBit}
      */
-    public void addTaskHints(List<Integer> hints) {
+    public void addTaskHints(int hints) {
         CalendarUtils.getInstance(getContext()).addTaskHints(
                 mCurrentSelectYear, mCurrentSelectMonth, hints);
         if (mcvCalendar.getCurrentMonthView() != null) {
-            mcvCalendar.getCurrentMonthView().invalidate();
+            mcvCalendar.getCurrentMonthView().refreshTaskHints();
         }
         if (wcvCalendar.getCurrentWeekView() != null) {
-            wcvCalendar.getCurrentWeekView().invalidate();
+            wcvCalendar.getCurrentWeekView().refreshTaskHints();
         }
     }
 
     /**
      *
      *
-     * @param hints
+     * @param hints day mask, see {@link CalendarUtils#taskHintBit}
      */
-    public void removeTaskHints(List<Integer> hints) {
+    public void removeTaskHints(int hints) {
         CalendarUtils.getInstance(getContext()).removeTaskHints(
                 mCurrentSelectYear, mCurrentSelectMonth, hints);
         if (mcvCalendar.getCurrentMonthView() != null) {
-            mcvCalendar.getCurrentMonthView().invalidate();
+            mcvCalendar.getCurrentMonthView().refreshTaskHints();
         }
         if (wcvCalendar.getCurrentWeekView() != null) {
-            wcvCalendar.getCurrentWeekView().invalidate();
+            wcvCalendar.getCurrentWeekView().refreshTaskHints();
         }
     }
 
     public void refreshTaskHints() {
         if (mcvCalendar.getCurrentMonthView() != null) {
-            mcvCalendar.getCurrentMonthView().invalidate();
+            mcvCalendar.getCurrentMonthView().refreshTaskHints();
         }
         if (wcvCalendar.getCurrentWeekView() != null) {
-            wcvCalendar.getCurrentWeekView().invalidate();
+            wcvCalendar.getCurrentWeekView().refreshTaskHints();
         }
     }
     /**
@@ -650,7 +649,7 @@ public class ScheduleLayout extends FrameLayout {
         if (mcvCalendar.getCurrentMonthView() != null) {
             if (mcvCalendar.getCurrentMonthView().addTaskHint(day)) {
                 if (wcvCalendar.getCurrentWeekView() != null) {
-                    wcvCalendar.getCurrentWeekView().invalidate();
+                    wcvCalendar.getCurrentWeekView().refreshTaskHints();
                 }
             }
         }
@@ -665,7 +664,7 @@ public class ScheduleLayout extends FrameLayout {
         if (mcvCalendar.getCurrentMonthView() != null) {
             if (mcvCalendar.getCurrentMonthView().removeTaskHint(day)) {
                 if (wcvCalendar.getCurrentWeekView() != null) {
-                    wcvCalendar.getCurrentWeekView().invalidate();
+                    wcvCalendar.getCurrentWeekView().refreshTaskHints();
                 }
             }
         }
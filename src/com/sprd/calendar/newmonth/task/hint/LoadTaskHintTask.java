@@ -0,0 +1,42 @@
+package com.sprd.calendar.newmonth.task.hint;
+
+import android.content.Context;
+import com.sprd.calendar.newmonth.CalendarUtils;
+import com.sprd.calendar.newmonth.base.task.BaseAsyncTask;
+import com.sprd.calendar.newmonth.data.EventDao;
+import com.sprd.calendar.newmonth.listener.OnTaskFinishedListener;
+
+/**
+ * Loads the task hints of every month from (startYear, startMonth) to
+ * (endYear, endMonth) into CalendarUtils. The result tells whether any of
+ * them changed. Months not reached yet are skipped once the task is cancelled.
+ */
+public class LoadTaskHintTask extends BaseAsyncTask<Boolean> {
+
+    private int mStartIndex;
+    private int mEndIndex;
+
+    public LoadTaskHintTask(Context context,
+            OnTaskFinishedListener<Boolean> onTaskFinishedListener,
+            int startYear, int startMonth, int endYear, int endMonth) {
+        super(context, onTaskFinishedListener);
+        mStartIndex = startYear * 12 + startMonth;
+        mEndIndex = endYear * 12 + endMonth;
+    }
+
+    @Override
+    protected Boolean doInBackground(Void... params) {
+        EventDao dao = EventDao.getInstance(mContext);
+        CalendarUtils utils = CalendarUtils.getInstance(mContext);
+        boolean changed = false;
+        for (int index = mStartIndex; index <= mEndIndex && !isCancelled(); index++) {
+            int year = index / 12;
+            int month = index % 12;
+            if (utils.updateTaskHints(year, month, dao.getTaskHintByMonth(year, month))) {
+                changed = true;
+            }
+        }
+        mNeedUpdate = changed;
+        return changed;
+    }
+}
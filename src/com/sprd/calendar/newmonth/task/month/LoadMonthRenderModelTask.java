@@ -0,0 +1,33 @@
+package com.sprd.calendar.newmonth.task.month;
+
+import android.content.Context;
+import com.sprd.calendar.newmonth.base.task.BaseAsyncTask;
+import com.sprd.calendar.newmonth.listener.OnTaskFinishedListener;
+import com.sprd.calendar.newmonth.month.MonthRenderModel;
+
+/**
+ * Builds the render model of one month so MonthView does not have to on its
+ * first draw.
+ */
+public class LoadMonthRenderModelTask extends BaseAsyncTask<MonthRenderModel> {
+
+    private int mYear;
+    private int mMonth;
+    private float mDaySize;
+    private float mLabelSize;
+
+    public LoadMonthRenderModelTask(Context context,
+            OnTaskFinishedListener<MonthRenderModel> onTaskFinishedListener,
+            int year, int month, float daySize, float labelSize) {
+        super(context, onTaskFinishedListener);
+        mYear = year;
+        mMonth = month;
+        mDaySize = daySize;
+        mLabelSize = labelSize;
+    }
+
+    @Override
+    protected MonthRenderModel doInBackground(Void... params) {
+        return MonthRenderModel.build(mContext, mYear, mMonth, mDaySize, mLabelSize);
+    }
+}
@@ -4,6 +4,7 @@ import android.content.Context;
 import android.content.res.TypedArray;
 import android.support.v4.view.PagerAdapter;
 import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.view.View;
 import android.view.ViewGroup;
 
@@ -11,9 +12,17 @@ import org.joda.time.DateTime;
 
 import com.android.calendar.Utils;
 
+import java.util.ArrayDeque;
+
 public class WeekAdapter extends PagerAdapter {
 
+    /* a pager keeps 3 pages attached, so a swipe frees at most one */
+    private static final int MAX_RECYCLED_VIEWS = 2;
+
     private SparseArray<WeekView> mViews;
+    private final ArrayDeque<WeekView> mRecycledViews = new ArrayDeque<WeekView>();
+    /* selection of each page that was swiped away, as (year * 12 + month) * 32 + day */
+    private final SparseIntArray mSelectedDays = new SparseIntArray();
     private Context mContext;
     private TypedArray mArray;
     private WeekCalendarView mWeekCalendarView;
@@ -41,12 +50,14 @@ public class WeekAdapter extends PagerAdapter {
 
     @Override
     public Object instantiateItem(ViewGroup container, int position) {
+        recycleDetachedViews(position);
         for (int i = 0; i < 3; i++) {
             if (position - 2 + i >= 0 && position - 2 + i < mWeekCount
                     && mViews.get(position - 2 + i) == null) {
                 instanceWeekView(position - 2 + i);
             }
         }
+        mViews.get(position).loadTaskHints();
         container.addView(mViews.get(position));
         return mViews.get(position);
     }
@@ -58,7 +69,36 @@ public class WeekAdapter extends PagerAdapter {
 
     @Override
     public void destroyItem(ViewGroup container, int position, Object object) {
-        container.removeView((View) object);
+        WeekView weekView = (WeekView) object;
+        container.removeView(weekView);
+        if (mViews.get(position) == weekView) {
+            mViews.remove(position);
+        }
+        recycle(position, weekView);
+    }
+
+    private void recycle(int position, WeekView weekView) {
+        weekView.cancelTaskHintLoad();
+        mSelectedDays.put(position, (weekView.getSelectYear() * 12
+                + weekView.getSelectMonth()) * 32 + weekView.getSelectDay());
+        if (mRecycledViews.size() < MAX_RECYCLED_VIEWS) {
+            mRecycledViews.add(weekView);
+        }
+    }
+
+    /**
+     * Views made ahead of time for the pages before the current one are not
+     * attached; drops the ones the pager has moved away from.
+     */
+    private void recycleDetachedViews(int position) {
+        for (int i = mViews.size() - 1; i >= 0; i--) {
+            int key = mViews.keyAt(i);
+            WeekView weekView = mViews.valueAt(i);
+            if (Math.abs(key - position) > 2 && weekView.getParent() == null) {
+                mViews.removeAt(i);
+                recycle(key, weekView);
+            }
+        }
     }
 
     public SparseArray<WeekView> getViews() {
@@ -70,13 +110,23 @@ public class WeekAdapter extends PagerAdapter {
     }
 
     public WeekView instanceWeekView(int position) {
-        WeekView weekView = new WeekView(mContext, mArray,
-                mStartDate.plusWeeks(position - mWeekDefaultPostion));
+        DateTime startDate = mStartDate.plusWeeks(position - mWeekDefaultPostion);
+        WeekView weekView = mRecycledViews.poll();
+        if (weekView != null) {
+            weekView.bind(startDate);
+        } else {
+            weekView = new WeekView(mContext, mArray, startDate);
+            weekView.setLayoutParams(new ViewGroup.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.MATCH_PARENT));
+            weekView.setOnWeekClickListener(mWeekCalendarView);
+        }
+        int selected = mSelectedDays.get(position);
+        if (selected != 0) {
+            weekView.setSelectYearMonth(selected / 32 / 12, selected / 32 % 12,
+                    selected % 32);
+        }
         weekView.setId(position);
-        weekView.setLayoutParams(new ViewGroup.LayoutParams(
-                ViewGroup.LayoutParams.MATCH_PARENT,
-                ViewGroup.LayoutParams.MATCH_PARENT));
-        weekView.setOnWeekClickListener(mWeekCalendarView);
         weekView.invalidate();
         mViews.put(position, weekView);
         return weekView;
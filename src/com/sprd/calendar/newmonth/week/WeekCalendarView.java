@@ -15,6 +15,19 @@ public class WeekCalendarView extends ViewPager implements OnWeekClickListener {
 
     private OnCalendarClickListener mOnCalendarClickListener;
     private WeekAdapter mWeekAdapter;
+    private int mScrollState = SCROLL_STATE_IDLE;
+    private final Runnable mRecordPages = new Runnable() {
+        @Override
+        public void run() {
+            int position = getCurrentItem();
+            for (int i = position - 1; i <= position + 1; i++) {
+                WeekView weekView = mWeekAdapter.getViews().get(i);
+                if (weekView != null && weekView.getParent() == WeekCalendarView.this) {
+                    weekView.recordPage();
+                }
+            }
+        }
+    };
 
     public WeekCalendarView(Context context) {
         this(context, null);
@@ -100,10 +113,22 @@ public class WeekCalendarView extends ViewPager implements OnWeekClickListener {
 
         @Override
         public void onPageScrollStateChanged(int state) {
-
+            mScrollState = state;
+            removeCallbacks(mRecordPages);
+            if (state == SCROLL_STATE_IDLE) {
+                // after the frame that settles the page
+                post(mRecordPages);
+            }
         }
     };
 
+    /**
+     * @return whether the pages are being dragged or are settling
+     */
+    public boolean isScrolling() {
+        return mScrollState != SCROLL_STATE_IDLE;
+    }
+
     /**
      * @param onCalendarClickListener
      */
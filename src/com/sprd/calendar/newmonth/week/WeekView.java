@@ -8,27 +8,31 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.os.AsyncTask;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
-import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
 import android.text.format.Time;
+import com.android.calendar.DrawAllocationAudit;
 import com.android.calendar.Utils;
 import com.android.calendar.R;
 
 import com.sprd.calendar.newmonth.CalendarUtils;
-import com.sprd.calendar.newmonth.data.EventDao;
+import com.sprd.calendar.newmonth.PageRenderCache;
+import com.sprd.calendar.newmonth.data.HolidayStore;
+import com.sprd.calendar.newmonth.listener.OnTaskFinishedListener;
+import com.sprd.calendar.newmonth.task.hint.LoadTaskHintTask;
 import com.sprd.calendar.lunar.LunarCalendar;
 import com.sprd.calendar.lunar.LunarCalendarConvertUtil;
 import com.sprd.calendar.foreigncalendar.ForeignFestivalCalendar;
 
 import org.joda.time.DateTime;
 import java.util.Calendar;
-import java.util.List;
+import java.util.Locale;
 
-public class WeekView extends View {
+public class WeekView extends View implements PageRenderCache.Page {
 
     private static final int NUM_COLUMNS = 7;
     private Paint mPaint;
@@ -42,27 +46,48 @@ public class WeekView extends View {
     private int mHolidayTextColor;
     private int mCurrYear, mCurrMonth, mCurrDay;
     private int mSelYear, mSelMonth, mSelDay;
-    private int mInitYear, mInitMonth;
     private int mColumnSize, mRowSize, mSelectCircleSize;
     private int mDaySize;
     private int mLunarTextSize;
     private int mCircleRadius = 3;
-    private int[] mHolidays;
-    private String mHolidayOrLunarText[];
-    protected boolean[] mLunarDayNumbersIsFest;
+    private int[] mHolidays = new int[NUM_COLUMNS];
+    private final String mHolidayOrLunarText[] = new String[NUM_COLUMNS];
+    protected final boolean[] mLunarDayNumbersIsFest = new boolean[NUM_COLUMNS];
+    private int[] mLunarDates = new int[NUM_COLUMNS];
     private LunarCalendar mLunarCalendar;
     private ForeignFestivalCalendar mForeignFestivalCalendar;
     private boolean mIsShowHint;
+    private int mTaskHintVersion = -1;
+    private DateTime mHintStartDate;
+    private LoadTaskHintTask mTaskHintTask;
+    private final OnTaskFinishedListener<Boolean> mTaskHintListener =
+            new OnTaskFinishedListener<Boolean>() {
+                @Override
+                public void setNeedUpdate(boolean update) {
+                }
+
+                @Override
+                public void onTaskFinished(Boolean changed) {
+                    refreshTaskHints();
+                }
+            };
+    private final HolidayStore.OnHolidaysChangedListener mHolidaysListener =
+            new HolidayStore.OnHolidaysChangedListener() {
+                @Override
+                public void onHolidaysChanged() {
+                    invalidate();
+                }
+            };
     private boolean mIsShowHolidayHint;
     private DateTime mStartDate;
+    private DateTime mFirstDate;
+    private long mPageKey;
+    private final int[] mRenderState = new int[10];
+    // Whether the last draw replayed the page cache
+    private boolean mDrawnFromCache;
     private DisplayMetrics mDisplayMetrics;
     private OnWeekClickListener mOnWeekClickListener;
     private GestureDetector mGestureDetector;
-    private List<Integer> mTaskHintList;
-    private List<Integer> mTaskHintNextMonthList;
-    private List<Integer> mTaskHintLastMonthList;
-    int mLastMonth;
-    int mNextMonth;
     int firstOfWeek;
     private Bitmap mRestBitmap, mWorkBitmap;
 
@@ -93,51 +118,68 @@ public class WeekView extends View {
         }
     }
 
-    private void initTaskHint(DateTime startDate, DateTime endDate) {
-        if (mIsShowHint) {
-            int startDateMonth = startDate.getMonthOfYear();
-            int endDateMonth = endDate.getMonthOfYear();
-            if (mTaskHintList != null) {
-                mTaskHintList.clear();
-            }
-            if (mTaskHintLastMonthList != null) {
-                mTaskHintLastMonthList.clear();
-            }
-            if (mTaskHintNextMonthList != null) {
-                mTaskHintNextMonthList.clear();
-            }
-            mLastMonth = mSelMonth - 1;
-            mNextMonth = mSelMonth + 1;
-            Log.d("WeekView","Start Query  agenda...");
-            EventDao dao = EventDao.getInstance(getContext());
-            mTaskHintList = CalendarUtils.getInstance(getContext())
-                    .addTaskHints(mSelYear, mSelMonth,
-                            dao.getTaskHintByMonth(mSelYear, mSelMonth));
-
-            if (startDateMonth != endDateMonth) {
-               if (startDateMonth-1 == mSelMonth) {
-                   if (mNextMonth != 13) {
-                       mTaskHintNextMonthList = CalendarUtils.getInstance(getContext())
-                           .addTaskHints(mSelYear, mNextMonth,
-                                dao.getTaskHintByMonth(mSelYear, mNextMonth));
-                   } else {
-                       mTaskHintNextMonthList = CalendarUtils.getInstance(getContext())
-                           .addTaskHints(mSelYear+1, 1,
-                                dao.getTaskHintByMonth(mSelYear+1, 1));
-                   }
-               } else if (endDateMonth-1 == mSelMonth) {
-                   if (mLastMonth != 0) {
-                       mTaskHintLastMonthList = CalendarUtils.getInstance(getContext())
-                           .addTaskHints(mSelYear, mLastMonth,
-                               dao.getTaskHintByMonth(mSelYear, mLastMonth));
-                   } else {
-                       mTaskHintLastMonthList = CalendarUtils.getInstance(getContext())
-                           .addTaskHints(mSelYear-1, 12,
-                               dao.getTaskHintByMonth(mSelYear-1 , 12));
-                   }
-               }
-            }
-            Log.d("WeekView", "End Query agenda...");
+    /**
+     * Rebinds a recycled page to another week, keeping its paints, arrays
+     * and listeners. A pending task hint load of the old week is dropped.
+     */
+    public void bind(DateTime dateTime) {
+        cancelTaskHintLoad();
+        mTaskHintTask = null;
+        mTaskHintVersion = -1;
+        setStartDate(dateTime);
+        initWeek();
+        invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        HolidayStore.addListener(mHolidaysListener);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        HolidayStore.removeListener(mHolidaysListener);
+    }
+
+    private void setStartDate(DateTime dateTime) {
+        mStartDate = dateTime;
+        mPageKey = PageRenderCache.weekKey(Time.getJulianDay(dateTime.getMillis(),
+                dateTime.getZone().getOffset(dateTime.getMillis()) / 1000));
+        firstOfWeek = Utils.getFirstDayOfWeek(getContext());
+    }
+
+    private void initTaskHint(DateTime startDate) {
+        mHintStartDate = startDate;
+        loadTaskHints();
+    }
+
+    /**
+     * Loads the task hints of the months this week spans in the background,
+     * the view draws with the hints already known until the load finishes.
+     * Does nothing if a load is running or done.
+     */
+    public void loadTaskHints() {
+        if (!mIsShowHint || mTaskHintTask != null || mHintStartDate == null) {
+            return;
+        }
+        // A week spans at most two months
+        DateTime lastDate = mHintStartDate.plusDays(6);
+        mTaskHintTask = new LoadTaskHintTask(getContext(), mTaskHintListener,
+                mHintStartDate.getYear(), mHintStartDate.getMonthOfYear() - 1,
+                lastDate.getYear(), lastDate.getMonthOfYear() - 1);
+        mTaskHintTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Cancels a pending task hint load, e.g. when the page is swiped away.
+     */
+    public void cancelTaskHintLoad() {
+        if (mTaskHintTask != null
+                && mTaskHintTask.getStatus() != AsyncTask.Status.FINISHED) {
+            mTaskHintTask.cancel(false);
+            mTaskHintTask = null;
         }
     }
 
@@ -186,27 +228,7 @@ public class WeekView extends View {
             mIsShowHint = true;
             mIsShowHolidayHint = true;
         }
-        mStartDate = dateTime;
-        DateTime tempDate;
-        firstOfWeek = Utils.getFirstDayOfWeek(getContext());
-
-        if (firstOfWeek == Time.SATURDAY) {
-            tempDate = dateTime.plusDays(-1);
-        } else if (firstOfWeek == Time.MONDAY) {
-            tempDate = dateTime.plusDays(1);
-        } else {
-            tempDate = dateTime;
-        }
-        mRestBitmap = BitmapFactory.decodeResource(getResources(),
-                R.drawable.ic_rest_day);
-        mWorkBitmap = BitmapFactory.decodeResource(getResources(),
-                R.drawable.ic_work_day);
-        int holidays[] = CalendarUtils.getInstance(getContext()).getHolidays(
-                tempDate.getYear(), tempDate.getMonthOfYear());
-        int row = CalendarUtils.getWeekRow(getContext(), tempDate.getYear(),
-                tempDate.getMonthOfYear() - 1, tempDate.getDayOfMonth());
-        mHolidays = new int[7];
-        System.arraycopy(holidays, row * 7, mHolidays, 0, mHolidays.length);
+        setStartDate(dateTime);
     }
 
     private void initPaint() {
@@ -262,9 +284,7 @@ public class WeekView extends View {
             setSelectYearMonth(tempDateTime.getYear(),
                     tempDateTime.getMonthOfYear() - 1, tempDateTime.getDayOfMonth());
         }
-        mInitYear = mSelYear;
-        mInitMonth = mSelMonth;
-        initTaskHint(tempDateTime, endDate);
+        initTaskHint(tempDateTime);
 
     }
 
@@ -307,19 +327,70 @@ public class WeekView extends View {
 
     @Override
     protected void onDraw(Canvas canvas) {
+        int allocations = DrawAllocationAudit.begin();
+        mTaskHintVersion = CalendarUtils.getInstance(getContext()).getTaskHintVersion();
+        prepareDraw();
+        mDrawnFromCache = isPagerScrolling() && PageRenderCache.getInstance().draw(canvas,
+                mPageKey, mRenderState, getWidth(), getHeight());
+        if (!mDrawnFromCache) {
+            drawPage(canvas);
+        }
+        DrawAllocationAudit.end("newmonth.WeekView", allocations);
+    }
+
+    /**
+     * Records this page into the page cache so it can be replayed during
+     * the next swipe.
+     */
+    public void recordPage() {
+        if (mDrawnFromCache) {
+            // Let go of the replayed bitmap, the cache may draw another page into it
+            mDrawnFromCache = false;
+            invalidate();
+        }
+        if (getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        prepareDraw();
+        PageRenderCache.getInstance().record(this, mPageKey, mRenderState,
+                getWidth(), getHeight());
+    }
+
+    private boolean isPagerScrolling() {
+        return getParent() instanceof WeekCalendarView
+                && ((WeekCalendarView) getParent()).isScrolling();
+    }
+
+    /**
+     * Brings the sizes and the first shown day up to date and fills
+     * mRenderState with everything the page depends on besides its week.
+     */
+    private void prepareDraw() {
         initCurrentDate();                 //Sprd Modify for bug756857
         initSize();
-        clearData();
+        int firstOfWeek = Utils.getFirstDayOfWeek(getContext());
+        updateFirstDate(firstOfWeek);
+        mRenderState[0] = firstOfWeek;
+        mRenderState[1] = mSelYear;
+        mRenderState[2] = mSelMonth;
+        mRenderState[3] = mSelDay;
+        mRenderState[4] = mCurrYear;
+        mRenderState[5] = mCurrMonth;
+        mRenderState[6] = mCurrDay;
+        mRenderState[7] = CalendarUtils.getInstance(getContext()).getTaskHintVersion();
+        mRenderState[8] = HolidayStore.getVersion();
+        mRenderState[9] = Utils.mLunarFlag ? 1 : 0;
+    }
+
+    @Override
+    public void drawPage(Canvas canvas) {
         int selected = drawThisWeek(canvas);
         if (Utils.mLunarFlag || Utils.mSupportForeignFestivalCalendar) {
             drawLunarText(canvas, selected);
         }
-        // drawHoliday(canvas);
-    }
-
-    private void clearData() {
-        mHolidayOrLunarText = new String[7];
-        mLunarDayNumbersIsFest = new boolean[7];
+        if (Utils.mLunarFlag && HolidayStore.isShownFor(Locale.getDefault())) {
+            drawHoliday(canvas);
+        }
     }
 
     private void initSize() {
@@ -331,23 +402,21 @@ public class WeekView extends View {
         }
     }
 
-    private int drawThisWeek(Canvas canvas) {
-        int selected = -1;
+    /**
+     * Finds the first day shown for the given week start and settles the
+     * selected year of a week that spans two years.
+     */
+    private void updateFirstDate(int firstOfWeek) {
         DateTime dateTime;
-        int firstOfWeek = Utils.getFirstDayOfWeek(getContext());
-        int offset = 0;
         if (firstOfWeek == Time.SATURDAY) {
             dateTime = mStartDate.plusDays(-1);
-            offset = 1;
         } else if (firstOfWeek == Time.MONDAY) {
             dateTime = mStartDate.plusDays(1);
             if ((mSelMonth == dateTime.getMonthOfYear()-1 && mSelDay < dateTime.getDayOfMonth()) || (mSelMonth <  dateTime.getMonthOfYear()-1 && mSelDay > 27)) {
                dateTime = mStartDate.plusDays(-6);
             }
-            offset = 1;
         } else {
             dateTime = mStartDate;
-            offset = 1;
         }
         //mSelYear is not the current select year.
         if (mSelYear != dateTime.getYear() || mSelYear != dateTime.plusDays(6).getYear()) {
@@ -357,10 +426,24 @@ public class WeekView extends View {
                  mSelYear = dateTime.plusDays(6).getYear();
              }
         }
+        mFirstDate = dateTime;
+    }
+
+    private int drawThisWeek(Canvas canvas) {
+        int selected = -1;
+        DateTime dateTime = mFirstDate;
+        int offset = 1;
         int weekday = CalendarUtils.getFirstDayWeek(getContext(),mSelYear, mSelMonth, mSelDay);
+        if (Utils.mLunarFlag && !Utils.mSupportForeignFestivalCalendar) {
+            LunarCalendarConvertUtil.getPackedLunarDates(dateTime.getYear(),
+                    dateTime.getMonthOfYear() - 1, dateTime.getDayOfMonth(),
+                    mLunarDates, NUM_COLUMNS);
+        }
         for (int i = 0; i < 7; i++) {
             DateTime date = dateTime.plusDays(i);
             int day = date.getDayOfMonth();
+            mHolidays[i] = HolidayStore.getHoliday(date.getYear(),
+                    date.getMonthOfYear() - 1, day);
             String dayString = String.valueOf(day);
             int startX = (int) (mColumnSize * i + (mColumnSize - mPaint
                     .measureText(dayString)) / 2);
@@ -384,24 +467,7 @@ public class WeekView extends View {
                 mPaint.setStyle(Paint.Style.FILL);
                 mPaint.setStrokeWidth(1);
             }
-            //drawHintCircle(i, day, canvas);
-            if (dateTime.getYear() != dateTime.plusDays(6).getYear()) {
-                if (date.getYear() < mInitYear) {
-                    drawHintCircle(i, day, true, false, canvas);
-                } else if (date.getYear() > mInitYear) {
-                    drawHintCircle(i, day, false, true, canvas);
-                } else {
-                    drawHintCircle(i, day, false, false, canvas);
-                }
-            } else {
-                if (dateTime.getMonthOfYear()-1 == dateTime.plusDays(6).getMonthOfYear()-1 || date.getMonthOfYear() -1 == mInitMonth) {
-                    drawHintCircle(i, day, false, false, canvas);
-                } else if (date.getMonthOfYear()-1 < mInitMonth){
-                    drawHintCircle(i, day, true, false, canvas);
-                } else {
-                    drawHintCircle(i, day, false, true, canvas);
-                }
-            }
+            drawHintCircle(i, date, canvas);
 
             if (day == mSelDay && mCurrMonth == mSelMonth
                     && mCurrYear == mSelYear && mCurrDay == mSelDay) {
@@ -422,8 +488,8 @@ public class WeekView extends View {
                         .getForeignFestivalInfo();
                 mLunarDayNumbersIsFest[i] = mForeignFestivalCalendar.isFastival;
             } else if (Utils.mLunarFlag) {
-                LunarCalendarConvertUtil.parseLunarCalendar(date.getYear(),
-                        date.getMonthOfYear() - 1, day, mLunarCalendar);
+                LunarCalendarConvertUtil.setLunarCalendar(mLunarDates[i],
+                        date.getYear(), date.getMonthOfYear() - 1, day, mLunarCalendar);
                 mHolidayOrLunarText[i] = mLunarCalendar.getLunarDayInfo();
                 mLunarDayNumbersIsFest[i] = mLunarCalendar.mIsFastival;
             }
@@ -456,8 +522,22 @@ public class WeekView extends View {
         }
     }
 
+    private void ensureHolidayBitmaps() {
+        if (mRestBitmap == null) {
+            mRestBitmap = BitmapFactory.decodeResource(getResources(),
+                    R.drawable.ic_rest_day);
+            mWorkBitmap = BitmapFactory.decodeResource(getResources(),
+                    R.drawable.ic_work_day);
+        }
+    }
+
     private void drawHoliday(Canvas canvas) {
-        if (mIsShowHolidayHint) {
+        boolean hasHoliday = false;
+        for (int holiday : mHolidays) {
+            hasHoliday |= holiday != 0;
+        }
+        if (mIsShowHolidayHint && hasHoliday) {
+            ensureHolidayBitmaps();
             Rect rect = new Rect(0, 0, mRestBitmap.getWidth(),
                     mRestBitmap.getHeight());
             Rect rectF = new Rect();
@@ -467,9 +547,9 @@ public class WeekView extends View {
                 rectF.set(mColumnSize * (column + 1) - mRestBitmap.getWidth()
                         - distance, distance, mColumnSize * (column + 1)
                         - distance, mRestBitmap.getHeight() + distance);
-                if (mHolidays[i] == 1) {
+                if (mHolidays[i] == HolidayStore.REST_DAY) {
                     canvas.drawBitmap(mRestBitmap, rect, rectF, null);
-                } else if (mHolidays[i] == 2) {
+                } else if (mHolidays[i] == HolidayStore.WORK_DAY) {
                     canvas.drawBitmap(mWorkBitmap, rect, rectF, null);
                 }
             }
@@ -480,23 +560,15 @@ public class WeekView extends View {
      *
      *
      * @param column
-     * @param day
+     * @param date
      * @param canvas
      */
-    private void drawHintCircle(int column, int day, boolean lastMonth, boolean nextMonth, Canvas canvas) {
+    private void drawHintCircle(int column, DateTime date, Canvas canvas) {
         if (mIsShowHint) {
-            if (!lastMonth && !nextMonth) {
-               if (!(mTaskHintList != null && mTaskHintList.size() > 0) || !mTaskHintList.contains(day)) {
-                  return;
-               }
-            } else if (lastMonth) {
-               if (!(mTaskHintLastMonthList != null && mTaskHintLastMonthList.size() > 0 ) || !mTaskHintLastMonthList.contains(day)) {
-                  return;
-               }
-            } else {
-               if (!(mTaskHintNextMonthList != null && mTaskHintNextMonthList.size() > 0 ) || !mTaskHintNextMonthList.contains(day)) {
-                  return;
-               }
+            int hints = CalendarUtils.getInstance(getContext()).getTaskHints(
+                    date.getYear(), date.getMonthOfYear() - 1);
+            if (!CalendarUtils.hasTaskHint(hints, date.getDayOfMonth())) {
+                return;
             }
             mPaint.setColor(mHintCircleColor);
             float circleX = (float) (mColumnSize * column + mColumnSize * 0.5);
@@ -610,11 +682,13 @@ public class WeekView extends View {
 
     /**
      *
-     * @param taskHintList
+     * @param taskHints day mask of the selected month, see {@link CalendarUtils#taskHintBit}
      */
-    public void setTaskHintList(List<Integer> taskHintList) {
-        mTaskHintList = taskHintList;
-        invalidate();
+    public void setTaskHints(int taskHints) {
+        if (CalendarUtils.getInstance(getContext()).updateTaskHints(mSelYear,
+                mSelMonth, taskHints)) {
+            invalidate();
+        }
     }
 
     /**
@@ -622,11 +696,9 @@ public class WeekView extends View {
      * @param day
      */
     public void addTaskHint(Integer day) {
-        if (mTaskHintList != null) {
-            if (!mTaskHintList.contains(day)) {
-                mTaskHintList.add(day);
-                invalidate();
-            }
+        if (CalendarUtils.getInstance(getContext()).addTaskHint(mSelYear,
+                mSelMonth, day)) {
+            invalidate();
         }
     }
 
@@ -635,10 +707,19 @@ public class WeekView extends View {
      * @param day
      */
     public void removeTaskHint(Integer day) {
-        if (mTaskHintList != null) {
-            if (mTaskHintList.remove(day)) {
-                invalidate();
-            }
+        if (CalendarUtils.getInstance(getContext()).removeTaskHint(mSelYear,
+                mSelMonth, day)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Redraws the view only if some task hint changed since its last draw.
+     */
+    public void refreshTaskHints() {
+        if (mIsShowHint && mTaskHintVersion != CalendarUtils.getInstance(
+                getContext()).getTaskHintVersion()) {
+            invalidate();
         }
     }
 
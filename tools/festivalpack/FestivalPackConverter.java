@@ -0,0 +1,146 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import jxl.Sheet;
+import jxl.Workbook;
+import jxl.read.biff.BiffException;
+
+/**
+ * Host tool that compiles a foreign festival spreadsheet into the pack read by
+ * com.sprd.calendar.foreigncalendar.FestivalPack, so the app does not parse
+ * the workbook at runtime.
+ *
+ * Row 0 holds the language code of each label column (from column 2 on),
+ * every other row is one festival: column 1 lists its days and ends with the
+ * row number, e.g. 20140101|20150101|1, and the label columns hold its name.
+ *
+ * Run from the project root after editing the spreadsheet:
+ *
+ * <pre>
+ * javac -cp libs/jxl.jar -d /tmp/festivalpack tools/festivalpack/FestivalPackConverter.java
+ * java -cp libs/jxl.jar:/tmp/festivalpack FestivalPackConverter \
+ *         tools/festivalpack/Indoesia.xls assets/Indoesia.fpk
+ * </pre>
+ */
+public class FestivalPackConverter {
+
+    private static final int MAGIC = 0x46455354;
+    private static final int VERSION = 1;
+    private static final int DAYS_PER_YEAR = 12 * 31;
+    private static final int FIRST_LABEL_COLUMN = 2;
+
+    public static void main(String[] args) throws IOException, BiffException {
+        if (args.length != 2) {
+            System.err.println("usage: FestivalPackConverter <in.xls> <out.fpk>");
+            System.exit(1);
+        }
+        Workbook book = Workbook.getWorkbook(new File(args[0]));
+        try {
+            convert(book.getSheet(0), new File(args[1]));
+        } finally {
+            book.close();
+        }
+    }
+
+    private static void convert(Sheet sheet, File out) throws IOException {
+        int rows = sheet.getRows();
+        int cols = sheet.getColumns();
+        int festivalCount = rows - 1;
+        int languageCount = Math.max(0, cols - FIRST_LABEL_COLUMN);
+
+        String[] dates = new String[festivalCount];
+        for (int i = 0; i < festivalCount; i++) {
+            dates[i] = sheet.getCell(1, i + 1).getContents();
+        }
+        int firstYear = Integer.MAX_VALUE;
+        int lastYear = Integer.MIN_VALUE;
+        for (String dateStr : dates) {
+            for (String token : dateStr.split("\\|")) {
+                int date = parseDate(token);
+                if (date > 0) {
+                    firstYear = Math.min(firstYear, date / 10000);
+                    lastYear = Math.max(lastYear, date / 10000);
+                }
+            }
+        }
+        if (firstYear > lastYear) {
+            firstYear = lastYear = 0;
+        }
+
+        // When a day is listed by several rows the first one wins
+        short[] lines = new short[(lastYear - firstYear + 1) * DAYS_PER_YEAR];
+        for (String dateStr : dates) {
+            String[] tokens = dateStr.split("\\|");
+            int line;
+            try {
+                line = Integer.parseInt(tokens[tokens.length - 1].trim());
+            } catch (NumberFormatException e) {
+                System.err.println("skipping row without line number: " + dateStr);
+                continue;
+            }
+            if (line < 1 || line > festivalCount) {
+                System.err.println("skipping row with bad line number: " + dateStr);
+                continue;
+            }
+            for (int i = 0; i < tokens.length - 1; i++) {
+                int date = parseDate(tokens[i]);
+                if (date <= 0) {
+                    continue;
+                }
+                int index = (date / 10000 - firstYear) * DAYS_PER_YEAR
+                        + (date / 100 % 100 - 1) * 31 + date % 100 - 1;
+                if (lines[index] == 0) {
+                    lines[index] = (short) line;
+                }
+            }
+        }
+
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(out)))) {
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeShort(languageCount);
+            for (int i = 0; i < languageCount; i++) {
+                data.writeUTF(sheet.getCell(FIRST_LABEL_COLUMN + i, 0).getContents());
+            }
+            data.writeShort(festivalCount);
+            for (int i = 0; i < languageCount; i++) {
+                for (int row = 1; row <= festivalCount; row++) {
+                    data.writeUTF(sheet.getCell(FIRST_LABEL_COLUMN + i, row).getContents());
+                }
+            }
+            data.writeInt(firstYear);
+            data.writeShort(lines.length / DAYS_PER_YEAR);
+            for (short line : lines) {
+                data.writeShort(line);
+            }
+        }
+        System.out.println("wrote " + festivalCount + " festivals in " + languageCount
+                + " languages for " + firstYear + "-" + lastYear + " to " + out);
+    }
+
+    /**
+     * @return the date as yyyyMMdd, or -1 if the token is not such a date
+     */
+    private static int parseDate(String token) {
+        token = token.trim();
+        if (token.length() != 8) {
+            return -1;
+        }
+        int date;
+        try {
+            date = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        int month = date / 100 % 100;
+        int day = date % 100;
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return -1;
+        }
+        return date;
+    }
+}